@@ -2,6 +2,7 @@ package ritzow.sandbox.client;
 
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -18,6 +19,7 @@ import ritzow.sandbox.network.TimeoutException;
 import ritzow.sandbox.util.TaskQueue;
 import ritzow.sandbox.util.Utility;
 import ritzow.sandbox.world.World;
+import ritzow.sandbox.world.WorldChunk;
 import ritzow.sandbox.world.entity.Entity;
 
 /**
@@ -126,6 +128,12 @@ public class Client {
 			case Protocol.SERVER_REMOVE_BLOCK:
 				processServerRemoveBlock(data);
 				break;
+			case Protocol.SERVER_LOAD_CHUNKS:
+				processLoadChunks(data);
+				break;
+			case Protocol.SERVER_UNLOAD_CHUNKS:
+				processUnloadChunks(data);
+				break;
 			case Protocol.PING:
 				break;
 			default:
@@ -149,17 +157,15 @@ public class Client {
 		if(isConnected())
 			throw new IllegalStateException("client already connected to a server");
 		network.start();
-		synchronized(server) {
-			try {
-				byte[] packet = new byte[2];
-				ByteUtil.putShort(packet, 0, Protocol.CLIENT_CONNECT_REQUEST);
-				network.sendReliable(server, packet, 10, 100);
-			} catch(TimeoutException e) {
-				disconnect(false);
-				return false;
-			}
-			Utility.waitOnCondition(server, 1000, () -> connectedStatus != STATUS_NOT_CONNECTED);
+		try {
+			byte[] packet = new byte[2];
+			ByteUtil.putShort(packet, 0, Protocol.CLIENT_CONNECT_REQUEST);
+			network.sendReliable(server, packet, 10, 100);
+		} catch(TimeoutException e) {
+			disconnect(false);
+			return false;
 		}
+		Utility.waitOnCondition(server, 1000, () -> connectedStatus != STATUS_NOT_CONNECTED);
 		if(connectedStatus == STATUS_CONNECTED)
 			state = new ConnectionState();
 		else
@@ -263,19 +269,18 @@ public class Client {
 	
 	private void processReceivePlayerEntityID(DataReader data) {
 		int id = data.readInteger();
-		for(Entity e : getWorld()) {
-			if(e.getID() == id) {
-				state.player = (ClientPlayerEntity)e;
-				Utility.notify(playerLock);
-				return;
-			}
-		}
-		throw new IllegalStateException("no entity with ID " + id + " exists");
+		Entity e = getWorld().getEntity(id);
+		if(e == null)
+			throw new IllegalStateException("no entity with ID " + id + " exists");
+		state.player = (ClientPlayerEntity)e;
+		Utility.notify(playerLock);
 	}
 	
 	private void processRemoveEntity(DataReader data) {
-		int id = data.readInteger();
-		getWorld().removeIf(e -> e.getID() == id);
+		World world = getWorld();
+		Entity e = world.getEntity(data.readInteger());
+		if(e != null)
+			world.remove(e);
 	}
 	
 	private void processAddEntity(DataReader data) {
@@ -283,10 +288,8 @@ public class Client {
 			boolean compressed = data.readBoolean();
 			byte[] entity = data.readBytes(data.remaining());
 			Entity e = serializer.deserialize(compressed ? ByteUtil.decompress(entity) : entity);
-			state.world.forEach(o -> {
-				if(o.getID() == e.getID())
-					throw new IllegalStateException("cannot have two entities with the same ID");
-			});
+			if(getWorld().getEntity(e.getID()) != null)
+				throw new IllegalStateException("cannot have two entities with the same ID");
 			getWorld().add(e);
 		} catch(ClassCastException e) {
 			System.err.println("Error while deserializing received entity");
@@ -295,16 +298,35 @@ public class Client {
 	
 	private void processGenericEntityUpdate(DataReader data) {
 		int id = data.readInteger();
-		for (Entity e : getWorld()) {
-			if(e.getID() == id) {
-				e.setPositionX(data.readFloat());
-				e.setPositionY(data.readFloat());
-				e.setVelocityX(data.readFloat());
-				e.setVelocityY(data.readFloat());
-				return;
-			}
+		Entity e = getWorld().getEntity(id);
+		if(e == null) {
+			System.err.println("no entity with id " + id + " found to update");
+		} else {
+			e.setPositionX(data.readFloat());
+			e.setPositionY(data.readFloat());
+			e.setVelocityX(data.readFloat());
+			e.setVelocityY(data.readFloat());
+		}
+	}
+	
+	private void processLoadChunks(DataReader data) {
+		boolean compressed = data.readBoolean();
+		byte[] chunks = data.readBytes(data.remaining());
+		chunks = compressed ? ByteUtil.decompress(chunks) : chunks;
+		World world = getWorld();
+		for(int index = 0; index < chunks.length;) {
+			int length = 4 + ByteUtil.getInteger(chunks, index); //serialized length does not include the length itself
+			WorldChunk chunk = serializer.deserialize(Arrays.copyOfRange(chunks, index, index + length));
+			world.setChunk(chunk);
+			index += length;
+		}
+	}
+	
+	private void processUnloadChunks(DataReader data) {
+		World world = getWorld();
+		while(data.remaining() > 0) {
+			world.removeChunk(data.readInteger(), data.readInteger());
 		}
-		System.err.println("no entity with id " + id + " found to update");
 	}
 	
 	private void processReceiveWorldData(DataReader data) {
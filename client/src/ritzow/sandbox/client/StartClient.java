@@ -28,6 +28,7 @@ import ritzow.sandbox.client.input.handler.InputHandler;
 import ritzow.sandbox.client.input.handler.WindowFocusHandler;
 import ritzow.sandbox.client.world.entity.ClientPlayerEntity;
 import ritzow.sandbox.network.Protocol;
+import ritzow.sandbox.util.FixedTimestep;
 import ritzow.sandbox.util.RepeatUpdater;
 import ritzow.sandbox.util.SharedConstants;
 import ritzow.sandbox.util.Utility;
@@ -51,18 +52,16 @@ public final class StartClient {
 		}
 	}
 	
-	private static boolean exit;
+	private static volatile boolean exit;
 	private static Object exitLock = new Object();
 	
 	private static void exit() {
-		synchronized(exitLock) {
-			exit = true;
-			exitLock.notifyAll();
-		}
+		exit = true;
+		Utility.notify(exitLock);
 	}
 	
 	//to be run on game update thread (rendering thread)
-	private static void initGraphics(RenderManager renderManager, World world, CameraController cameraGrip) {
+	private static void initGraphics(RenderManager renderManager, World world, FixedTimestep timestep, CameraController cameraGrip) {
 		try {
 			renderManager.initialize(); //set up opengl
 			
@@ -105,7 +104,7 @@ public final class StartClient {
 					new Shader(new FileInputStream("resources/shaders/lightFragmentShader"), ShaderType.FRAGMENT),
 					cameraGrip.getCamera()
 			);
-			renderManager.getRenderers().add(new ClientWorldRenderer(modelProgram, lightProgram, world));
+			renderManager.getRenderers().add(new ClientWorldRenderer(modelProgram, lightProgram, world, timestep));
 			GraphicsUtility.checkErrors();
 		} catch (IOException | OpenGLException e) {
 			throw new RuntimeException(e);
@@ -148,8 +147,11 @@ public final class StartClient {
 		ClientPlayerEntity player = client.getPlayer();
 		System.out.println("Received player from server.");
 		
+		FixedTimestep timestep = new FixedTimestep(SharedConstants.TICK_RATE, 
+				SharedConstants.TIME_SCALE_NANOSECONDS, SharedConstants.MAX_CATCH_UP_STEPS);
+		
 		CameraController cameraGrip =
-				new TrackingCameraController(new Camera(0, 0, 1), audio, player, 0.005f, 0.05f, 0.6f);
+				new TrackingCameraController(new Camera(0, 0, 1), audio, player, timestep, 0.005f, 0.05f, 0.6f);
 		
 		//create and link player controllers so the user canControllergame
 		Collection<Controller> controllers = List.of(
@@ -161,21 +163,26 @@ public final class StartClient {
 		controllers.forEach(eventProcessor.getDisplay().getInputManager()::add);
 		
 		RenderManager renderManager = eventProcessor.getDisplay().getRenderManager();
-		RepeatUpdater gameUpdater = new RepeatUpdater(() -> initGraphics(renderManager, world, cameraGrip), renderManager::shutdown);
+		RepeatUpdater gameUpdater = new RepeatUpdater(() -> initGraphics(renderManager, world, timestep, cameraGrip), renderManager::shutdown);
 		
 		class WorldUpdater implements Runnable, WindowFocusHandler, InputHandler {
-			private volatile long previousTime = System.nanoTime();
 			private volatile boolean focused = true;
+			private volatile boolean resume;
 			
 			public void run() {
-				if(focused)
-					previousTime = Utility.updateWorld(world, previousTime, SharedConstants.MAX_TIMESTEP, SharedConstants.TIME_SCALE_NANOSECONDS);
+				if(focused) {
+					if(resume) {
+						timestep.reset();
+						resume = false;
+					}
+					timestep.update(world);
+				}
 			}
 			
 			@Override
 			public void windowFocus(boolean focused) {
 				if(focused)
-					previousTime = System.nanoTime();
+					resume = true; //the timestep is reset on the game updater thread
 				this.focused = focused;
 			}
 
@@ -193,11 +200,13 @@ public final class StartClient {
 		WorldUpdater updater = new WorldUpdater();
 		eventProcessor.getDisplay().getInputManager().add(updater);
 		
-		gameUpdater.getRepeatTasks().add(client.onReceiveMessageTask());
+		Runnable receiver = client.onReceiveMessageTask(), sleeper = () -> Utility.sleep(1);
+		gameUpdater.getRepeatTasks().add(receiver);
+		gameUpdater.getRepeatTasks().add(updater); //update first so the camera and renderer use the same interpolation
 		gameUpdater.getRepeatTasks().addAll(controllers);
-		gameUpdater.getRepeatTasks().add(updater);
 		gameUpdater.getRepeatTasks().add(renderManager);
-		gameUpdater.getRepeatTasks().add(() -> Utility.sleep(1));
+		gameUpdater.getRepeatTasks().add(sleeper);
+		gameUpdater.setTaskName(receiver, "receive messages").setTaskName(updater, "world update").setTaskName(sleeper, "sleep");
 		gameUpdater.start("Game updater");
 		gameUpdater.waitForSetup();
 		
@@ -208,6 +217,8 @@ public final class StartClient {
 					exit();
 				else if(key == ControlScheme.KEYBIND_FULLSCREEN)
 		            eventProcessor.getDisplay().toggleFullscreen();
+				else if(key == ControlScheme.KEYBIND_TIMINGS)
+					System.out.println(gameUpdater.formatTimings());
 			}
 		});
 
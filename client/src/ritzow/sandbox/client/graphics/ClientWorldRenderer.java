@@ -7,9 +7,14 @@ import static org.lwjgl.opengl.GL20.glDrawBuffers;
 import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
 import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT1;
 
-import ritzow.sandbox.client.world.block.ClientBlock;
+import java.util.ArrayList;
+import java.util.List;
+import ritzow.sandbox.client.world.block.ClientBlockRegistry;
+import ritzow.sandbox.util.FixedTimestep;
 import ritzow.sandbox.world.BlockGrid;
 import ritzow.sandbox.world.World;
+import ritzow.sandbox.world.block.BlockRegistry;
+import ritzow.sandbox.world.entity.Entity;
 
 public final class ClientWorldRenderer implements Renderer {
 	private final ModelRenderProgram modelProgram;
@@ -19,9 +24,13 @@ public final class ClientWorldRenderer implements Renderer {
 	private final OpenGLTexture finalTexture;
 	private int previousWidth, previousHeight;
 	private final World world;
+	private final FixedTimestep timestep;
+	private final List<Entity> visibleEntities;
 	
-	public ClientWorldRenderer(ModelRenderProgram modelProgram, LightRenderProgram lightProgram, World world) {
+	public ClientWorldRenderer(ModelRenderProgram modelProgram, LightRenderProgram lightProgram, World world, FixedTimestep timestep) {
 		this.world = world;
+		this.timestep = timestep;
+		this.visibleEntities = new ArrayList<>();
 		this.modelProgram = modelProgram;
 //		this.lightProgram = lightProgram;
 		this.framebuffer = new Framebuffer();
@@ -60,11 +69,18 @@ public final class ClientWorldRenderer implements Renderer {
 		//cache foreground and background of world
 		final BlockGrid foreground = world.getForeground(), background = world.getBackground();
 		
-		//calculate block grid bounds TODO fix after adding chunk system, allow for negatives
-		int leftBound = 	Math.max(0, (int)Math.floor(worldLeft));
-		int rightBound = 	Math.min(foreground.getWidth(), (int)Math.ceil(worldRight));
-		int topBound = 		Math.min(foreground.getHeight(), (int)Math.ceil(worldTop));
-		int bottomBound = 	Math.max(0, (int)Math.floor(worldBottom));
+		//calculate block grid bounds, which may be negative if the grid is unbounded
+		int leftBound = 	(int)Math.floor(worldLeft);
+		int rightBound = 	(int)Math.ceil(worldRight);
+		int topBound = 		(int)Math.ceil(worldTop);
+		int bottomBound = 	(int)Math.floor(worldBottom);
+		
+		if(foreground.isBounded()) {
+			leftBound = 	Math.max(0, leftBound);
+			rightBound = 	Math.min(foreground.getWidth() - 1, rightBound);
+			topBound = 		Math.min(foreground.getHeight() - 1, topBound);
+			bottomBound = 	Math.max(0, bottomBound);
+		}
 		
 		//prepare the diffuse texture for drawing
 		framebuffer.clear(1.0f, 1.0f, 1.0f, 1.0f);
@@ -79,30 +95,24 @@ public final class ClientWorldRenderer implements Renderer {
 		//render the blocks visible in the viewport
 		for(int row = bottomBound; row <= topBound; row++) {
 			for(int column = leftBound; column <= rightBound; column++) {
-				if(foreground.isBlock(column, row)) {
-					ClientBlock block = (ClientBlock)foreground.get(column, row);
-					modelProgram.render(block.getModelIndex(), 1.0f, column, row, 1.0f, 1.0f, 0.0f);
-				} else if(background.isBlock(column, row)) {
-					ClientBlock block = (ClientBlock)background.get(column, row);
-					modelProgram.render(block.getModelIndex(), 0.5f, column, row, 1.0f, 1.0f, 0.0f); 
+				int type = foreground.getType(column, row);
+				if(type != BlockRegistry.AIR) {
+					modelProgram.render(ClientBlockRegistry.getModelIndex(type), 1.0f, column, row, 1.0f, 1.0f, 0.0f);
+				} else if((type = background.getType(column, row)) != BlockRegistry.AIR) {
+					modelProgram.render(ClientBlockRegistry.getModelIndex(type), 0.5f, column, row, 1.0f, 1.0f, 0.0f); 
 				}
 			}
 		}
 		
-		//render the entities
-		world.forEach(e -> {
-			//pre-compute variables
-			Renderable graphics = (Renderable)e;
-			float posX = e.getPositionX();
-			float posY = e.getPositionY();
-			float halfWidth = graphics.getWidth()/2;
-			float halfHeight = graphics.getHeight()/2;
-			
-			//check if the entity is visible inside the viewport and render it
-			if(posX < worldRight + halfWidth && posX > worldLeft - halfWidth && posY < worldTop + halfHeight && posY > worldBottom - halfHeight) {
-				graphics.render(modelProgram);
-			}
-		});
+		//render the entities visible inside the viewport
+		//entities are drawn between their previous and current positions, so they move smoothly between world updates
+		float interpolation = timestep.getInterpolation();
+		world.getEntitiesInRectangle((worldLeft + worldRight)/2, (worldBottom + worldTop)/2, 
+				worldRight - worldLeft + 2, worldTop - worldBottom + 2, visibleEntities);
+		for(Entity e : visibleEntities) {
+			((Renderable)e).render(modelProgram, interpolation);
+		}
+		visibleEntities.clear();
 		
 		/* Need to "erase" blackness of shadowTexture where there is lighting.
 		 * render to shadow texture, sample from diffuse, blend diffuse and light value with shadow texture
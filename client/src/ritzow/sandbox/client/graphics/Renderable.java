@@ -1,7 +1,11 @@
 package ritzow.sandbox.client.graphics;
 
 public interface Renderable {
-	public void render(ModelRenderProgram program);
+	/**
+	 * @param program the program to render with
+	 * @param interpolation the fraction of a world update that has passed since the most recent world update, from 0 to 1
+	 */
+	public void render(ModelRenderProgram program, float interpolation);
 	public float getWidth();
 	public float getHeight();
 }
@@ -10,6 +10,7 @@ public class ControlScheme {
 	public static final int KEYBIND_QUIT = 			org.lwjgl.glfw.GLFW.GLFW_KEY_ESCAPE;
 	public static final int KEYBIND_FULLSCREEN =	org.lwjgl.glfw.GLFW.GLFW_KEY_F11;
 	public static final int KEYBIND_ACTIVATE =		org.lwjgl.glfw.GLFW.GLFW_KEY_E;
+	public static final int KEYBIND_TIMINGS =		org.lwjgl.glfw.GLFW.GLFW_KEY_F3;
 	
 	public static final ButtonControl KEYBIND_DIG = new GLFWMouseButtonControl();
 	
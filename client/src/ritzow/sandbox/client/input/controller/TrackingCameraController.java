@@ -7,10 +7,12 @@ import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
 import ritzow.sandbox.client.audio.ClientAudioSystem;
 import ritzow.sandbox.client.graphics.Camera;
 import ritzow.sandbox.client.input.ControlScheme;
+import ritzow.sandbox.util.FixedTimestep;
 import ritzow.sandbox.world.entity.Entity;
 
 public final class TrackingCameraController extends CameraController {
 	protected final Entity target;
+	protected final FixedTimestep timestep;
 	protected final ClientAudioSystem audio;
 	protected float zoomSpeed;
 	protected final float soundFalloff;
@@ -19,8 +21,9 @@ public final class TrackingCameraController extends CameraController {
 	protected final float maxZoom;
 	protected long previousTime;
 	
-	public TrackingCameraController(Camera camera, ClientAudioSystem audio, Entity target, float zoomSpeed, float minZoom, float maxZoom) {
+	public TrackingCameraController(Camera camera, ClientAudioSystem audio, Entity target, FixedTimestep timestep, float zoomSpeed, float minZoom, float maxZoom) {
 		super(camera);
+		this.timestep = timestep;
 		this.zoomSpeed = zoomSpeed;
 		this.target = target;
 		this.minZoom = minZoom / target.getWidth();
@@ -34,8 +37,10 @@ public final class TrackingCameraController extends CameraController {
 	public void update() {
 		if(previousTime == 0)
 			previousTime = System.nanoTime();
-		camera.setPositionX(target.getPositionX());
-		camera.setPositionY(target.getPositionY());
+		//follow the position the target is rendered at
+		float interpolation = timestep.getInterpolation();
+		camera.setPositionX(target.getInterpolatedPositionX(interpolation));
+		camera.setPositionY(target.getInterpolatedPositionY(interpolation));
 		long time = System.nanoTime();
 		camera.setZoom((Math.max(Math.min(maxZoom, camera.getZoom() + camera.getZoom() * (time - previousTime)/1000000 * velocityZ), minZoom)));
 		previousTime = time;
@@ -1,5 +1,6 @@
 package ritzow.sandbox.client.util;
 
+import ritzow.sandbox.client.world.block.ClientBlockRegistry;
 import ritzow.sandbox.client.world.block.ClientDirtBlock;
 import ritzow.sandbox.client.world.block.ClientGrassBlock;
 import ritzow.sandbox.client.world.entity.ClientItemEntity;
@@ -9,15 +10,21 @@ import ritzow.sandbox.data.SerializerReaderWriter;
 import ritzow.sandbox.network.Protocol;
 import ritzow.sandbox.world.BlockGrid;
 import ritzow.sandbox.world.World;
+import ritzow.sandbox.world.WorldChunk;
 import ritzow.sandbox.world.component.Inventory;
 
 public final class SerializationProvider {
+	//blocks are stateless, so every deserialized block is the registered shared instance
+	private static final ClientDirtBlock dirt = ClientBlockRegistry.register(new ClientDirtBlock());
+	private static final ClientGrassBlock grass = ClientBlockRegistry.register(new ClientGrassBlock());
+	
 	private static final SerializerReaderWriter provider = new SerializerReaderWriter()
 			.register(Protocol.BLOCK_GRID, BlockGrid.class, BlockGrid::new)
 			.register(Protocol.WORLD, World.class, World::new)
+			.register(Protocol.WORLD_CHUNK, WorldChunk.class, WorldChunk::new)
 			.register(Protocol.BLOCK_ITEM, ClientBlockItem.class, ClientBlockItem::new)
-			.register(Protocol.DIRT_BLOCK, ClientDirtBlock.class, ClientDirtBlock::new)
-			.register(Protocol.GRASS_BLOCK, ClientGrassBlock.class, ClientGrassBlock::new)
+			.register(Protocol.DIRT_BLOCK, ClientDirtBlock.class, data -> dirt)
+			.register(Protocol.GRASS_BLOCK, ClientGrassBlock.class, data -> grass)
 			.register(Protocol.PLAYER_ENTITY, ClientPlayerEntity.class, ClientPlayerEntity::new)
 			.register(Protocol.INVENTORY, Inventory.class, Inventory::new)
 			.register(Protocol.ITEM_ENTITY, ClientItemEntity.class, ClientItemEntity::new);
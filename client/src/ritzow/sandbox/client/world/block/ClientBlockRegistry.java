@@ -0,0 +1,32 @@
+package ritzow.sandbox.client.world.block;
+
+import ritzow.sandbox.world.block.BlockRegistry;
+
+/**
+ * Registers client blocks with BlockRegistry and stores the client-only per-type properties
+ * in primitive arrays indexed by block type ID.
+ * @author Solomon Ritzow
+ */
+public final class ClientBlockRegistry {
+	private ClientBlockRegistry() {
+		throw new UnsupportedOperationException("ClientBlockRegistry cannot be instantiated");
+	}
+	
+	private static final int[] modelIndex = new int[BlockRegistry.MAX_TYPES];
+	
+	/**
+	 * Registers the shared instance of a client block type with BlockRegistry.
+	 * @param block the instance that will represent every block of its type
+	 * @return the provided block
+	 */
+	public static synchronized <T extends ClientBlock> T register(T block) {
+		BlockRegistry.register(block);
+		modelIndex[block.getTypeID()] = block.getModelIndex();
+		return block;
+	}
+	
+	/** @return the model index used to render blocks of the type **/
+	public static int getModelIndex(int type) {
+		return modelIndex[type];
+	}
+}
@@ -1,7 +1,6 @@
 package ritzow.sandbox.client.world.block;
 
 import ritzow.sandbox.data.ByteUtil;
-import ritzow.sandbox.data.DataReader;
 import ritzow.sandbox.data.Serializer;
 import ritzow.sandbox.client.graphics.RenderConstants;
 
@@ -11,10 +10,6 @@ public class ClientGrassBlock extends ClientBlock {
 		
 	}
 	
-	public ClientGrassBlock(DataReader input) {
-		
-	}
-
 	@Override
 	public int getModelIndex() {
 		return RenderConstants.MODEL_GRASS_BLOCK;
@@ -44,4 +39,14 @@ public class ClientGrassBlock extends ClientBlock {
 	public byte[] getBytes(Serializer ser) {
 		return ByteUtil.EMPTY_BYTE_ARRAY;
 	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return o != null && o.getClass() == getClass();
+	}
+	
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
 }
@@ -25,8 +25,8 @@ public final class ClientItemEntity<I extends Item> extends ItemEntity<I> implem
 	public ClientItemEntity(int entityID, I item, float rotation, float x, float y) {
 		super(entityID, item);
 		this.rotation = rotation;
-		this.positionX = x;
-		this.positionY = y;
+		setPositionX(x);
+		setPositionY(y);
 	}
 	
 	@Override
@@ -36,8 +36,9 @@ public final class ClientItemEntity<I extends Item> extends ItemEntity<I> implem
 	}
 
 	@Override
-	public void render(ModelRenderProgram renderer) {
-		renderer.render(((Graphical)item).getGraphics(), 1.0f, positionX, positionY, 0.5f, 0.5f, rotation);
+	public void render(ModelRenderProgram renderer, float interpolation) {
+		renderer.render(((Graphical)item).getGraphics(), 1.0f, getInterpolatedPositionX(interpolation), 
+				getInterpolatedPositionY(interpolation), 0.5f, 0.5f, rotation);
 	}
 	
 	@Override
@@ -22,9 +22,9 @@ public class ClientPlayerEntity extends PlayerEntity implements Renderable {
 	}
 
 	@Override
-	public void render(ModelRenderProgram renderer) {
-		float positionX = this.positionX;
-		float positionY = this.positionY;
+	public void render(ModelRenderProgram renderer, float interpolation) {
+		float positionX = getInterpolatedPositionX(interpolation);
+		float positionY = getInterpolatedPositionY(interpolation);
 		renderer.render(
 				RenderConstants.MODEL_GREEN_FACE, 1.0f, positionX, positionY + (down ? 0 : 1) * SIZE_SCALE/2, 
 				SIZE_SCALE, SIZE_SCALE, 0.0f);
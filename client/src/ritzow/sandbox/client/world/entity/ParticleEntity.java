@@ -44,8 +44,8 @@ public class ParticleEntity extends Entity implements Renderable {
 	}
 
 	@Override
-	public void render(ModelRenderProgram renderer) {
-		renderer.render(model, opacity, positionX, positionY, scaleX, scaleY, rotation);
+	public void render(ModelRenderProgram renderer, float interpolation) {
+		renderer.render(model, opacity, getInterpolatedPositionX(interpolation), getInterpolatedPositionY(interpolation), scaleX, scaleY, rotation);
 	}
 	
 	protected long getLifetimeRemaining() {
@@ -0,0 +1,127 @@
+package ritzow.sandbox.server;
+
+import java.util.Arrays;
+import java.util.Random;
+import ritzow.sandbox.world.World;
+import ritzow.sandbox.world.block.BlockRegistry;
+import ritzow.sandbox.world.block.DirtBlock;
+import ritzow.sandbox.world.entity.Entity;
+import ritzow.sandbox.world.entity.ItemEntity;
+import ritzow.sandbox.world.entity.PlayerEntity;
+import ritzow.sandbox.world.item.BlockItem;
+
+/**
+ * Compares the distribution of World update times with entities processed in the order they were added and
+ * grouped by class, see {@link World#setGroupByClass(boolean)}. The worlds contain the same shuffled mix of
+ * four entity classes, so that every call made on each entity during an update can go to one of four methods.
+ * @author Solomon Ritzow
+ */
+public final class DispatchBenchmark {
+	private static final int[] ENTITY_COUNTS = {10_000, 50_000};
+	private static final int WORLD_WIDTH = 5000, WORLD_HEIGHT = 100, GROUND_HEIGHT = 50;
+	private static final int WARMUP_UPDATES = 200, MEASURED_UPDATES = 500;
+	private static final float TIMESTEP = 1, GRAVITY = 0.016f;
+
+	/** a larger item, so that items of the same class share properties that differ from other item classes **/
+	private static final class Boulder extends ItemEntity<BlockItem> {
+		Boulder(int entityID, BlockItem item, float x, float y) {
+			super(entityID, item, x, y);
+		}
+
+		@Override
+		public float getWidth() {
+			return 0.9f;
+		}
+
+		@Override
+		public float getHeight() {
+			return 0.9f;
+		}
+	}
+
+	/** an entity that never rests, with properties that are read from each entity **/
+	private static final class Bouncer extends ItemEntity<BlockItem> {
+		Bouncer(int entityID, BlockItem item, float x, float y) {
+			super(entityID, item, x, y);
+		}
+
+		@Override
+		public void update(World world, float time) {
+			if(getVelocityY() == 0)
+				setVelocityY(0.2f);
+		}
+
+		@Override
+		public boolean canSleep() {
+			return false;
+		}
+
+		@Override
+		public boolean hasConstantProperties() {
+			return false;
+		}
+	}
+
+	public static void main(String... args) {
+		SerializationProvider.getProvider(); //registers the block types
+		BlockItem item = new BlockItem(BlockRegistry.getInstance(DirtBlock.class));
+
+		System.out.println("entities\tgrouping\tmean (ms)\tp50 (ms)\tp90 (ms)\tp99 (ms)\tmax (ms)");
+		for(int count : ENTITY_COUNTS) {
+			for(boolean grouped : new boolean[] {false, true}) {
+				World world = createWorld(count, item);
+				world.setGroupByClass(grouped);
+				long[] times = measure(world);
+				System.out.println(String.format("%d\t\t%s\t\t%.3f\t\t%.3f\t\t%.3f\t\t%.3f\t\t%.3f", count, grouped ? "class" : "none",
+						Arrays.stream(times).average().orElse(0) / 1_000_000, percentile(times, 0.5),
+						percentile(times, 0.9), percentile(times, 0.99), percentile(times, 1)));
+			}
+		}
+	}
+
+	/** @return a world of dirt with {@code count} entities of four classes randomly placed above the ground, in random order **/
+	private static World createWorld(int count, BlockItem item) {
+		World world = new World(WORLD_WIDTH, WORLD_HEIGHT, GRAVITY);
+		world.getForeground().fill(0, 0, WORLD_WIDTH, GROUND_HEIGHT, item.getBlock());
+		Random random = new Random(0);
+		for(int i = 0; i < count; i++) {
+			float x = random.nextFloat() * WORLD_WIDTH, y = GROUND_HEIGHT + 1 + random.nextFloat() * (WORLD_HEIGHT - GROUND_HEIGHT - 2);
+			int id = world.nextEntityID();
+			Entity entity;
+			switch(random.nextInt(4)) {
+				case 0:
+					entity = new ItemEntity<>(id, item, x, y); break;
+				case 1:
+					entity = new Boulder(id, item, x, y); break;
+				case 2:
+					entity = new Bouncer(id, item, x, y); break;
+				default:
+					entity = new PlayerEntity(id);
+					entity.setPositionX(x);
+					entity.setPositionY(y);
+			}
+			world.add(entity);
+		}
+		return world;
+	}
+
+	/** @return the duration of each measured update in nanoseconds, sorted **/
+	private static long[] measure(World world) {
+		for(int i = 0; i < WARMUP_UPDATES; i++) {
+			world.update(TIMESTEP);
+		}
+		long[] times = new long[MEASURED_UPDATES];
+		for(int i = 0; i < MEASURED_UPDATES; i++) {
+			long start = System.nanoTime();
+			world.update(TIMESTEP);
+			times[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(times);
+		return times;
+	}
+
+	/** @return the update time in milliseconds that the fraction of updates took at most **/
+	private static double percentile(long[] sorted, double fraction) {
+		return sorted[(int)Math.ceil(fraction * sorted.length) - 1] / 1_000_000.0;
+	}
+}
@@ -0,0 +1,106 @@
+package ritzow.sandbox.server;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import ritzow.sandbox.world.World;
+import ritzow.sandbox.world.block.BlockRegistry;
+import ritzow.sandbox.world.block.DirtBlock;
+import ritzow.sandbox.world.entity.ItemEntity;
+import ritzow.sandbox.world.entity.PhysicsStore;
+import ritzow.sandbox.world.item.BlockItem;
+
+/**
+ * Measures how many entities per second can be integrated by a PhysicsStore, and how many can be updated by a World,
+ * with 10,000 to 100,000 dropped items lying on and falling towards the ground. Updates are measured separately for
+ * items that never fall asleep and for items that have landed and fallen asleep, since sleeping items are skipped by most
+ * of an update. Each measurement is warmed up first.
+ * @author Solomon Ritzow
+ */
+public final class PhysicsBenchmark {
+	private static final int[] ENTITY_COUNTS = {10_000, 25_000, 50_000, 100_000};
+	private static final int WORLD_WIDTH = 5000, WORLD_HEIGHT = 100, GROUND_HEIGHT = 50;
+	private static final int WARMUP_UPDATES = 100, MEASURED_UPDATES = 100, MAX_SETTLE_UPDATES = 1000;
+	private static final float TIMESTEP = 1, GRAVITY = 0.016f;
+	
+	/** An item that is never put to sleep, so that every update moves and collision checks it **/
+	private static final class AwakeItemEntity extends ItemEntity<BlockItem> {
+		AwakeItemEntity(int entityID, BlockItem item, float x, float y) {
+			super(entityID, item, x, y);
+		}
+		
+		@Override
+		public boolean canSleep() {
+			return false;
+		}
+	}
+	
+	public static void main(String... args) {
+		SerializationProvider.getProvider(); //registers the block types
+		BlockItem item = new BlockItem(BlockRegistry.getInstance(DirtBlock.class));
+		
+		System.out.println("entities\tintegrate (entities/s)\tawake update (entities/s)\tawake parallel update (entities/s)"
+				+ "\tsleeping update (entities/s)\tsleeping parallel update (entities/s)");
+		for(int count : ENTITY_COUNTS) {
+			PhysicsStore store = new PhysicsStore();
+			createWorld(count, item, false).forEach(store::add);
+			World awake = createWorld(count, item, false);
+			World awakeParallel = createWorld(count, item, false);
+			awakeParallel.setUpdatePool(ForkJoinPool.commonPool());
+			World sleeping = settle(createWorld(count, item, true));
+			World sleepingParallel = settle(createWorld(count, item, true));
+			sleepingParallel.setUpdatePool(ForkJoinPool.commonPool());
+			
+			double integrate = measure(count, () -> store.integrate(0, store.size(), TIMESTEP, GRAVITY));
+			double awakeUpdate = measure(count, () -> awake.update(TIMESTEP));
+			double awakeParallelUpdate = measure(count, () -> awakeParallel.update(TIMESTEP));
+			double sleepingUpdate = measure(count, () -> sleeping.update(TIMESTEP));
+			double sleepingParallelUpdate = measure(count, () -> sleepingParallel.update(TIMESTEP));
+			System.out.println(String.format("%d\t\t%.0f\t\t%.0f\t\t%.0f\t\t%.0f\t\t%.0f", count, integrate, 
+					awakeUpdate, awakeParallelUpdate, sleepingUpdate, sleepingParallelUpdate));
+		}
+	}
+	
+	/**
+	 * @param canSleep whether the items can fall asleep once they land
+	 * @return a world of dirt with {@code count} items randomly placed above the ground
+	 */
+	private static World createWorld(int count, BlockItem item, boolean canSleep) {
+		World world = new World(WORLD_WIDTH, WORLD_HEIGHT, GRAVITY);
+		world.getForeground().fill(0, 0, WORLD_WIDTH, GROUND_HEIGHT, item.getBlock());
+		Random random = new Random(0);
+		for(int i = 0; i < count; i++) {
+			float x = random.nextFloat() * WORLD_WIDTH, y = GROUND_HEIGHT + random.nextFloat() * (WORLD_HEIGHT - GROUND_HEIGHT);
+			world.add(canSleep ? new ItemEntity<>(world.nextEntityID(), item, x, y) : new AwakeItemEntity(world.nextEntityID(), item, x, y));
+		}
+		return world;
+	}
+	
+	/** @return the world, after updating it until every entity is asleep or {@code MAX_SETTLE_UPDATES} updates have passed **/
+	private static World settle(World world) {
+		for(int i = 0; i < MAX_SETTLE_UPDATES && countAwake(world) > 0; i++) {
+			world.update(TIMESTEP);
+		}
+		return world;
+	}
+	
+	private static int countAwake(World world) {
+		int[] count = {0};
+		world.forEach(e -> {
+			if(!e.isSleeping())
+				count[0]++;
+		});
+		return count[0];
+	}
+	
+	/** @return the number of entities processed per second by {@code update} **/
+	private static double measure(int count, Runnable update) {
+		for(int i = 0; i < WARMUP_UPDATES; i++) {
+			update.run();
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < MEASURED_UPDATES; i++) {
+			update.run();
+		}
+		return (double)count * MEASURED_UPDATES / ((System.nanoTime() - start) / 1_000_000_000.0);
+	}
+}
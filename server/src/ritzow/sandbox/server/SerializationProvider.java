@@ -4,6 +4,8 @@ import ritzow.sandbox.data.SerializerReaderWriter;
 import ritzow.sandbox.network.Protocol;
 import ritzow.sandbox.world.BlockGrid;
 import ritzow.sandbox.world.World;
+import ritzow.sandbox.world.WorldChunk;
+import ritzow.sandbox.world.block.BlockRegistry;
 import ritzow.sandbox.world.block.DirtBlock;
 import ritzow.sandbox.world.block.GrassBlock;
 import ritzow.sandbox.world.component.Inventory;
@@ -15,12 +17,17 @@ public class SerializationProvider {
 	private static final SerializerReaderWriter provider;
 	
 	static {
+		//blocks are stateless, so every deserialized block is the registered shared instance
+		DirtBlock dirt = BlockRegistry.register(new DirtBlock());
+		GrassBlock grass = BlockRegistry.register(new GrassBlock());
+		
 		provider = new SerializerReaderWriter();
 		provider.register(Protocol.BLOCK_GRID, BlockGrid.class, BlockGrid::new);
 		provider.register(Protocol.WORLD, World.class, World::new);
+		provider.register(Protocol.WORLD_CHUNK, WorldChunk.class, WorldChunk::new);
 		provider.register(Protocol.BLOCK_ITEM, BlockItem.class, BlockItem::new);
-		provider.register(Protocol.DIRT_BLOCK, DirtBlock.class, DirtBlock::new);
-		provider.register(Protocol.GRASS_BLOCK, GrassBlock.class, GrassBlock::new);
+		provider.register(Protocol.DIRT_BLOCK, DirtBlock.class, data -> dirt);
+		provider.register(Protocol.GRASS_BLOCK, GrassBlock.class, data -> grass);
 		provider.register(Protocol.PLAYER_ENTITY, PlayerEntity.class, PlayerEntity::new);
 		provider.register(Protocol.INVENTORY, Inventory.class, Inventory::new);
 		provider.register(Protocol.ITEM_ENTITY, ItemEntity.class, ItemEntity::new);
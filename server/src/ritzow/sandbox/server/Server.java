@@ -4,23 +4,35 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import ritzow.sandbox.data.ByteUtil;
 import ritzow.sandbox.data.SerializerReaderWriter;
+import ritzow.sandbox.network.MessageRing;
+import ritzow.sandbox.network.MessageRing.OverflowPolicy;
 import ritzow.sandbox.network.NetworkController;
 import ritzow.sandbox.network.Protocol;
 import ritzow.sandbox.network.Protocol.PlayerAction;
 import ritzow.sandbox.network.TimeoutException;
+import ritzow.sandbox.util.TickScheduler;
 import ritzow.sandbox.world.BlockGrid;
 import ritzow.sandbox.world.World;
+import ritzow.sandbox.world.WorldChunk;
 import ritzow.sandbox.world.block.Block;
 import ritzow.sandbox.world.entity.Entity;
 import ritzow.sandbox.world.entity.ItemEntity;
@@ -28,7 +40,35 @@ import ritzow.sandbox.world.entity.PlayerEntity;
 import ritzow.sandbox.world.item.BlockItem;
 
 public class Server {
+	/** distance in chunks from a player within which chunks are sent to the player's client **/
+	private static final int CHUNK_LOAD_RADIUS = 6;
+	
+	/** distance in chunks from a player beyond which the player's client unloads chunks, larger than the load radius so that chunks are not reloaded as a player moves back and forth **/
+	private static final int CHUNK_UNLOAD_RADIUS = 8;
+	
+	/** maximum number of chunks sent to a client each time chunks are streamed **/
+	private static final int MAX_CHUNKS_PER_STREAM = 32;
+	
+	/** chunk offsets within the load radius, packed as in chunkKey and ordered nearest first **/
+	private static final long[] CHUNK_OFFSETS = chunkOffsets(CHUNK_LOAD_RADIUS);
+	
+	/** maximum number of received messages waiting to be processed, further messages are dropped **/
+	private static final int RECEIVE_QUEUE_CAPACITY = 1024;
+	
+	/** How the server runs the tasks that wait for clients, such as connecting clients and reliable sends to each client **/
+	public static enum ExecutionMode {
+		/** a fixed pool of platform threads connects clients, and a pool of platform threads that grows as needed streams chunks **/
+		PLATFORM,
+		
+		/** 
+		 * each task runs on its own virtual thread, so the number of platform threads does not grow with the number of
+		 * clients and messages being sent, requires a Java runtime that supports virtual threads
+		 **/
+		VIRTUAL
+	}
+	
 	private final NetworkController network;
+	private final MessageRing received;
 	private final ExecutorService worker, broadcaster;
 	private final ServerRepeatUpdater updater;
 	private final SerializerReaderWriter serialRegistry;
@@ -40,18 +80,54 @@ public class Server {
 	}
 	
 	public Server(InetSocketAddress bindAddress) throws SocketException {
-		this.network = new NetworkController(bindAddress, this::process);
-		ThreadGroup processors = new ThreadGroup("Message Processors");
-		ThreadGroup senders = new ThreadGroup("Broadcaster Group");
-		this.worker = Executors.newFixedThreadPool(10, runnable -> new Thread(processors, runnable));
-		this.broadcaster = Executors.newCachedThreadPool(runnable -> new Thread(senders, runnable));
+		this(bindAddress, ExecutionMode.PLATFORM);
+	}
+	
+	/**
+	 * @param bindAddress the address to receive messages on
+	 * @param mode how to run tasks that wait for clients
+	 * @throws UnsupportedOperationException if the mode is {@link ExecutionMode#VIRTUAL} and virtual threads are not supported
+	 */
+	public Server(InetSocketAddress bindAddress, ExecutionMode mode) throws SocketException {
+		if(mode == ExecutionMode.VIRTUAL) {
+			this.worker = newVirtualThreadExecutor();
+			this.broadcaster = worker;
+		} else {
+			ThreadGroup processors = new ThreadGroup("Message Processors");
+			ThreadGroup senders = new ThreadGroup("Broadcaster Group");
+			this.worker = Executors.newFixedThreadPool(10, runnable -> new Thread(processors, runnable));
+			this.broadcaster = Executors.newCachedThreadPool(runnable -> new Thread(senders, runnable));
+		}
+		this.received = new MessageRing(RECEIVE_QUEUE_CAPACITY, Protocol.MAX_MESSAGE_LENGTH, OverflowPolicy.DROP);
+		this.network = new NetworkController(bindAddress, received::offer);
 		this.clients = Collections.synchronizedMap(new HashMap<InetSocketAddress, ClientState>());
 		this.serialRegistry = SerializationProvider.getProvider();
 		this.updater = new ServerRepeatUpdater(this);
 	}
 	
+	/** @return true if the Java runtime supports virtual threads, see {@link ExecutionMode#VIRTUAL} **/
+	public static boolean supportsVirtualThreads() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch(NoSuchMethodException e) {
+			return false;
+		}
+	}
+	
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			//looked up at runtime so that the server still compiles and runs on Java versions without virtual threads
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("virtual threads are not supported by this Java runtime", e);
+		}
+	}
+	
 	public void start(World world) {
 		world.setRemoveEntities(this::sendRemoveEntity);
+		world.setOnSleep(this::sendUpdateEntity); //send the position each entity comes to rest at
+		world.setUpdatePool(ForkJoinPool.commonPool());
 		updater.startWorld(world);
 		updater.start("Game Updater");
 		network.start();
@@ -73,6 +149,14 @@ public class Server {
 		}
 	}
 	
+	/** @return a table of the recent durations of each stage of the game updater, followed by the tick statistics **/
+	public String formatTimings() {
+		TickScheduler scheduler = updater.getScheduler();
+		return updater.formatTimings() + "ticks: " + scheduler.getTickCount() + ", overruns: " + 
+				scheduler.getOverrunCount() + ", skipped: " + scheduler.getSkippedCount() + 
+				", dropped messages: " + received.getDroppedCount();
+	}
+	
 	public ClientState[] listClients() {
 		ClientState[] list = new ClientState[clients.size()];
 		return clients.values().toArray(list);
@@ -94,34 +178,42 @@ public class Server {
 		}
 	}
 	
-	private void process(InetSocketAddress sender, int messageID, byte[] data) {
-		worker.execute(() -> {
+	/** Processes the messages received since the last call, called by the game updater once per loop **/
+	void processMessages() {
+		received.drain(this::process);
+	}
+	
+	/** @return the number of received messages that were dropped because too many were waiting to be processed **/
+	public long getDroppedMessageCount() {
+		return received.getDroppedCount();
+	}
+	
+	private void process(InetSocketAddress sender, int messageID, byte[] data, int length) {
+		ClientState client = clients.get(sender);
+		try {
+			if(length < 2)
+				throw new ClientBadDataException("message is too short to contain a protocol");
 			short protocol = ByteUtil.getShort(data, 0);
-			ClientState client = clients.get(sender);
-			try {
-				if(client == null && protocol == Protocol.CLIENT_CONNECT_REQUEST) {
-					connectClient(sender);
-				} else if(client != null && protocol != Protocol.CLIENT_CONNECT_REQUEST) {
-					onReceive(client, protocol, data);
-				}
-			} catch(ClientBadDataException e) {
-				//disconnect the client if it sends invalid data three times or more
-				if(client != null && client.strike() >= 3) {
-					disconnect(client, "server received bad data from client 3 times");
-				}
+			if(client == null && protocol == Protocol.CLIENT_CONNECT_REQUEST) {
+				worker.execute(() -> connectClient(sender)); //connecting waits for the client's response
+			} else if(client != null && protocol != Protocol.CLIENT_CONNECT_REQUEST) {
+				onReceive(client, protocol, data);
 			}
-		});
+		} catch(ClientBadDataException e) {
+			//disconnect the client if it sends invalid data three times or more
+			if(client != null && client.strike() >= 3) {
+				worker.execute(() -> disconnect(client, "server received bad data from client 3 times"));
+			}
+		}
 	}
 	
 
 	private final void processPlayerAction(ClientState client, byte[] data) {
 		if(client.player == null)
 			throw new ClientBadDataException("client has no associated player to perform an action");
-		updater.submitTask(() -> {
-			PlayerAction action = PlayerAction.forCode(data[2]);
-			boolean enable = ByteUtil.getBoolean(data, 3);
-			client.player.processAction(action, enable);
-		});
+		PlayerAction action = PlayerAction.forCode(data[2]);
+		boolean enable = ByteUtil.getBoolean(data, 3);
+		client.player.processAction(action, enable);
 	}
 	
 	private void processClientBreakBlock(ClientState client, byte[] data) {
@@ -130,21 +222,17 @@ public class Server {
 		if(!updater.getWorld().getForeground().isValid(x, y))
 			throw new ClientBadDataException("client sent bad x and y block coordinates");
 		
-		updater.submitTask(() -> {
-			if(updater.getWorld() != null) {
-				Block block = updater.getWorld().getForeground().get(x, y);
-				if(updater.getWorld().getForeground().destroy(updater.getWorld(), x, y)) {
-					//TODO block data needs to be reset on drop
-					ItemEntity<BlockItem> drop = 
-							new ItemEntity<>(updater.getWorld().nextEntityID(), new BlockItem(block), x, y);
-					drop.setVelocityX(-0.2f + ((float) Math.random() * (0.4f)));
-					drop.setVelocityY((float) Math.random() * (0.35f));
-					updater.getWorld().add(drop);
-					sendRemoveBlock(x, y);
-					sendAddEntity(drop);
-				}
-			}
-		});
+		Block block = updater.getWorld().getForeground().get(x, y);
+		if(updater.getWorld().getForeground().destroy(updater.getWorld(), x, y)) {
+			//TODO block data needs to be reset on drop
+			ItemEntity<BlockItem> drop = 
+					new ItemEntity<>(updater.getWorld().nextEntityID(), new BlockItem(block), x, y);
+			drop.setVelocityX(-0.2f + ((float) Math.random() * (0.4f)));
+			drop.setVelocityY((float) Math.random() * (0.35f));
+			updater.getWorld().add(drop);
+			sendRemoveBlock(x, y);
+			sendAddEntity(drop);
+		}
 	}
 	
 	public void broadcastPing() {
@@ -211,46 +299,28 @@ public class Server {
 		broadcastReliable(Protocol.buildConsoleMessage(message), true);
 	}
 	
-	private void broadcastReliable(byte[] data, boolean removeUnresponsive) {
-		broadcastReliable(data, removeUnresponsive, c -> true);
+	private CompletableFuture<Void> broadcastReliable(byte[] data, boolean removeUnresponsive) {
+		return broadcastReliable(data, removeUnresponsive, c -> true);
 	}
 	
 	/**
-	 * Broadcasts {@code data} to each client connected to this Server and returns once all clients have received the data or
-	 * become unresponsive
+	 * Broadcasts {@code data} to each client connected to this Server without waiting for the clients to receive it.
+	 * Reliable messages to a client are received in the order they are sent, so callers only need to wait on the
+	 * result when a later step depends on every client having received the data.
 	 * @param data the packet of data to send.
 	 * @param sendTest specify which clients the message should be sent to and which should not
 	 * @param removeUnresponsive whether or not to remove clients that do not respond from the server
+	 * @return a future that completes once all clients have received the data or become unresponsive, and never completes exceptionally
 	 */
-	private void broadcastReliable(byte[] data, boolean removeUnresponsive, Predicate<ClientState> sendTest) {
-		//TODO need alternative to synchronizing over all clients (separate lock to disallow add during broadcast?
-		if(clients.size() > 1) {
-			CountDownLatch barrier = new CountDownLatch(clients.size());
-			clients.forEach((address, client) -> {
-				if(sendTest.test(client)) {
-					broadcaster.execute(() -> {
-						try {
-							sendReliable(client, data, removeUnresponsive);
-						} finally {
-							barrier.countDown();
-						}
-					});
-				} else {
-					barrier.countDown();
-				}
-			});
-			
-			try {
-				barrier.await(); //wait until an acknowledgement has been received from all clients
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+	private CompletableFuture<Void> broadcastReliable(byte[] data, boolean removeUnresponsive, Predicate<ClientState> sendTest) {
+		List<CompletableFuture<Void>> sends = new ArrayList<>(clients.size());
+		synchronized(clients) {
+			for(ClientState client : clients.values()) {
+				if(sendTest.test(client))
+					sends.add(sendReliableAsync(client, data, removeUnresponsive));
 			}
-		} else if(clients.size() == 1) { //if there is only one client, skip extra steps
-			ClientState client = clients.values().iterator().next();
-			if(sendTest.test(client))
-				sendReliable(client, data, removeUnresponsive);
-		} //else: no clients are connected, send nothing
-	
+		}
+		return CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0]));
 	}
 	
 	private void broadcastUnreliable(byte[] data) {
@@ -271,15 +341,23 @@ public class Server {
 	}
 	
 	private void sendReliable(ClientState client, byte[] data, boolean removeUnresponsive) {
-		try {
-			long time = System.nanoTime();
-			network.sendReliable(client.address, data, 10, 100);
-			client.ping = (int)(System.nanoTime() - time)/1_000_000; //update client ping
-		} catch(TimeoutException e) {
-			if(removeUnresponsive) {
-				disconnect(client, false);
+		sendReliableAsync(client, data, removeUnresponsive).join();
+	}
+	
+	/** @return a future that completes when the client receives the message or times out, and never completes exceptionally **/
+	private CompletableFuture<Void> sendReliableAsync(ClientState client, byte[] data, boolean removeUnresponsive) {
+		long time = System.nanoTime();
+		return network.sendReliableAsync(client.address, data, 10, 100).handle((result, failure) -> {
+			if(failure == null) {
+				client.ping = (int)((System.nanoTime() - time)/1_000_000); //update client ping
+			} else if(failure instanceof TimeoutException) {
+				if(removeUnresponsive)
+					disconnect(client, false); //doesn't send anything, so it can run on the network threads
+			} else {
+				failure.printStackTrace();
 			}
-		}
+			return null;
+		});
 	}
 	
 	@SuppressWarnings("unused")
@@ -327,9 +405,10 @@ public class Server {
 	}
 	
 	public void disconnectAll(String reason) {
+		//wait until every client has received the disconnect or timed out before removing their connections,
+		//not synchronized on the clients while waiting, so that timed out sends can disconnect their clients
+		broadcastReliable(buildServerDisconnect(reason), false).join();
 		synchronized(clients) {
-			broadcastReliable(buildServerDisconnect(reason), false);
-			
 			for(ClientState client : clients.values()) {
 				network.removeConnection(client.address);
 				if(client.player != null) {
@@ -370,14 +449,10 @@ public class Server {
 					
 					//set the player's position to directly above the ground in the center of the world
 					BlockGrid grid = world.getForeground();
-					float posX = world.getForeground().getWidth()/2;
+					int posX = (grid.getLeft() + grid.getRight() + 1)/2;
+					int surface = grid.getSurfaceHeight(posX);
 					player.setPositionX(posX);
-					for(int i = grid.getHeight() - 2; i > 1; i--) {
-						if(grid.get(posX, i) == null && grid.get(posX, i + 1) == null && grid.get(posX, i - 1) != null) {
-							player.setPositionY(i);
-							break;
-						}
-					}
+					player.setPositionY(surface == BlockGrid.NO_SURFACE ? grid.getTop() : surface + 1);
 					
 					world.add(player);
 					sendAddEntity(player); //send entity to already connected players
@@ -397,9 +472,15 @@ public class Server {
 		}
 	}
 	
+	/**
+	 * Serializes the world without its blocks, which are streamed to each client
+	 * by {@link #streamChunks()} once it has connected.
+	 * @param world the world to send
+	 * @return the head packet followed by the world data packets
+	 */
 	public byte[][] buildWorldPackets(World world) {
 		//serialize the world for transfer
-		byte[] worldBytes = ByteUtil.compress(serialRegistry.serialize(world));
+		byte[] worldBytes = ByteUtil.compress(serialRegistry.serialize(world.copyWithoutBlocks()));
 		
 		//build packets
 		byte[][] packets = ByteUtil.split(worldBytes, Protocol.MAX_MESSAGE_LENGTH - 2, 2, 1);
@@ -416,6 +497,160 @@ public class Server {
 		return packets;
 	}
 	
+	/**
+	 * Starts sending each connected client the chunks near its player that it does not have yet,
+	 * nearest first, resends chunks it has that have changed, and tells it to unload chunks that 
+	 * its player has moved away from. Streaming
+	 * happens on the broadcaster threads, and a client is skipped if it is still being streamed to.
+	 * Must be called on the game updater thread, which reads each player's position.
+	 */
+	public void streamChunks() {
+		synchronized(clients) {
+			for(ClientState client : clients.values()) {
+				if(client.player != null && client.streaming.compareAndSet(false, true)) {
+					//entity positions can only be read on the game updater thread, which moves entities between store slots
+					int centerX = BlockGrid.toChunkCoordinate(Math.round(client.player.getPositionX()));
+					int centerY = BlockGrid.toChunkCoordinate(Math.round(client.player.getPositionY()));
+					broadcaster.execute(() -> {
+						try {
+							streamChunks(client, centerX, centerY);
+						} finally {
+							client.streaming.set(false);
+						}
+					});
+				}
+			}
+		}
+	}
+	
+	/** @param centerX the chunk containing the client's player, read on the game updater thread **/
+	private void streamChunks(ClientState client, int centerX, int centerY) {
+		World world = updater.getWorld();
+		long center = chunkKey(centerX, centerY);
+		BlockGrid foreground = world.getForeground(), background = world.getBackground();
+		if(center == client.streamCenter && client.streamComplete && 
+				foreground.getVersion() == client.foregroundVersion && background.getVersion() == client.backgroundVersion)
+			return; //the client already has the latest version of every chunk near its player
+		
+		//unload chunks that are too far from the player
+		List<Long> unloaded = new ArrayList<>();
+		for(Iterator<Long> iterator = client.chunks.iterator(); iterator.hasNext();) {
+			long key = iterator.next();
+			int dx = chunkX(key) - centerX, dy = chunkY(key) - centerY;
+			if(dx * dx + dy * dy > CHUNK_UNLOAD_RADIUS * CHUNK_UNLOAD_RADIUS) {
+				unloaded.add(key);
+				iterator.remove();
+			}
+		}
+		sendUnloadChunks(client, unloaded);
+		
+		//resend chunks that the client has that changed since they were sent, including chunks that are now empty
+		Set<Long> changed = new HashSet<>();
+		BlockGrid.ChunkAction addChanged = (chunkX, chunkY) -> {
+			if(client.chunks.contains(chunkKey(chunkX, chunkY)))
+				changed.add(chunkKey(chunkX, chunkY));
+		};
+		client.foregroundVersion = foreground.getChangedChunks(client.foregroundVersion, addChanged);
+		client.backgroundVersion = background.getChangedChunks(client.backgroundVersion, addChanged);
+		List<byte[]> loaded = new ArrayList<>();
+		for(long key : changed) {
+			loaded.add(serialRegistry.serialize(world.getChunk(chunkX(key), chunkY(key))));
+		}
+		
+		//send the nearest chunks that the client does not have yet, skipping chunks outside of the world
+		int sent = 0;
+		boolean complete = true;
+		for(long offset : CHUNK_OFFSETS) {
+			int chunkX = centerX + chunkX(offset), chunkY = centerY + chunkY(offset);
+			long key = chunkKey(chunkX, chunkY);
+			if(!client.chunks.contains(key) && foreground.isValid(chunkX * BlockGrid.CHUNK_SIZE, chunkY * BlockGrid.CHUNK_SIZE)) {
+				if(sent == MAX_CHUNKS_PER_STREAM) {
+					complete = false;
+					break;
+				}
+				client.chunks.add(key);
+				WorldChunk chunk = world.getChunk(chunkX, chunkY);
+				if(!chunk.isEmpty()) { //the client does not need to be sent chunks that contain no blocks
+					loaded.add(serialRegistry.serialize(chunk));
+					sent++;
+				}
+			}
+		}
+		sendLoadChunks(client, loaded);
+		
+		client.streamCenter = center;
+		client.streamComplete = complete;
+	}
+	
+	private void sendUnloadChunks(ClientState client, List<Long> chunks) {
+		//protocol, then the coordinates of as many chunks as fit in each packet
+		final int chunksPerPacket = (Protocol.MAX_MESSAGE_LENGTH - 2) / 8;
+		for(int start = 0; start < chunks.size() && isConnected(client); start += chunksPerPacket) {
+			int count = Math.min(chunksPerPacket, chunks.size() - start);
+			byte[] packet = new byte[2 + count * 8];
+			ByteUtil.putShort(packet, 0, Protocol.SERVER_UNLOAD_CHUNKS);
+			for(int i = 0; i < count; i++) {
+				long key = chunks.get(start + i);
+				ByteUtil.putInteger(packet, 2 + i * 8, chunkX(key));
+				ByteUtil.putInteger(packet, 6 + i * 8, chunkY(key));
+			}
+			sendReliable(client, packet, true);
+		}
+	}
+	
+	private void sendLoadChunks(ClientState client, List<byte[]> chunks) {
+		//protocol, compressed, then as many serialized chunks as fit in each packet
+		int index = 0;
+		while(index < chunks.size() && isConnected(client)) {
+			int end = index, length = 0;
+			while(end < chunks.size() && 3 + length + chunks.get(end).length <= Protocol.MAX_MESSAGE_LENGTH) {
+				length += chunks.get(end++).length;
+			}
+			
+			byte[] data;
+			boolean compress = end == index; //a single chunk that is too large is sent compressed
+			if(compress) {
+				data = ByteUtil.compress(chunks.get(end++));
+			} else {
+				data = new byte[length];
+				for(int i = index, offset = 0; i < end; offset += chunks.get(i++).length) {
+					ByteUtil.copy(chunks.get(i), data, offset);
+				}
+			}
+			
+			byte[] packet = new byte[3 + data.length];
+			ByteUtil.putShort(packet, 0, Protocol.SERVER_LOAD_CHUNKS);
+			ByteUtil.putBoolean(packet, 2, compress);
+			ByteUtil.copy(data, packet, 3);
+			sendReliable(client, packet, true);
+			index = end;
+		}
+	}
+	
+	private static long chunkKey(int chunkX, int chunkY) {
+		return ((long)chunkY << 32) | (chunkX & 0xFFFFFFFFL);
+	}
+	
+	private static int chunkX(long key) {
+		return (int)key;
+	}
+	
+	private static int chunkY(long key) {
+		return (int)(key >> 32);
+	}
+	
+	private static long[] chunkOffsets(int radius) {
+		List<Long> offsets = new ArrayList<>();
+		for(int dy = -radius; dy <= radius; dy++) {
+			for(int dx = -radius; dx <= radius; dx++) {
+				if(dx * dx + dy * dy <= radius * radius)
+					offsets.add(chunkKey(dx, dy));
+			}
+		}
+		offsets.sort(Comparator.comparingInt(key -> chunkX(key) * chunkX(key) + chunkY(key) * chunkY(key)));
+		return offsets.stream().mapToLong(Long::longValue).toArray();
+	}
+	
 	public int getConnectedClients() {
 		return clients.size();
 	}
@@ -427,10 +662,18 @@ public class Server {
 		private final AtomicInteger disconnectStrikes;
 		private volatile int ping; //set ping on receive message
 		
+		/** chunks the client has been sent or was not sent because they were empty, only used while streaming **/
+		private final Set<Long> chunks;
+		private final AtomicBoolean streaming;
+		private long streamCenter, foregroundVersion, backgroundVersion;
+		private boolean streamComplete;
+		
 		private static final AtomicInteger playerID = new AtomicInteger(1);
 		
 		public ClientState(InetSocketAddress address) {
 			this.disconnectStrikes = new AtomicInteger();
+			this.chunks = new HashSet<>();
+			this.streaming = new AtomicBoolean();
 			this.address = address;
 			username = "player" + playerID.getAndIncrement();
 		}
@@ -1,8 +1,11 @@
 package ritzow.sandbox.server;
 
+import java.util.List;
 import ritzow.sandbox.util.RepeatUpdater;
 import ritzow.sandbox.util.SharedConstants;
 import ritzow.sandbox.util.TaskQueue;
+import ritzow.sandbox.util.TickScheduler;
+import ritzow.sandbox.util.TickScheduler.OverrunPolicy;
 import ritzow.sandbox.util.Utility;
 import ritzow.sandbox.world.World;
 import ritzow.sandbox.world.entity.Entity;
@@ -11,15 +14,27 @@ public final class ServerRepeatUpdater extends RepeatUpdater {
 	private volatile World world;
 	private final Server server;
 	private final TaskQueue tasks;
-	private long previousTime, lastSendTime;
+	private final TickScheduler scheduler;
+	private final float tickTime;
+	private long lastSendTime;
+	private int ticks;
 	
-	private final Runnable worldUpdater = this::updateWorld;
+	//separate tasks so that the time spent in each is recorded separately
+	private final Runnable tickWaiter = this::awaitTick, messageProcessor, worldUpdater = this::updateWorld, updateSender = this::sendUpdates;
 	
 	private static final long NETWORK_SEND_INTERVAL_NANOSECONDS = Utility.millisToNanos(5);
 	
 	public ServerRepeatUpdater(Server server) {
 		this.server = server;
+		this.messageProcessor = server::processMessages;
+		this.scheduler = new TickScheduler(SharedConstants.TICK_RATE, OverrunPolicy.CATCH_UP, SharedConstants.MAX_CATCH_UP_STEPS);
+		this.tickTime = scheduler.getTickNanoseconds() / SharedConstants.TIME_SCALE_NANOSECONDS;
 		getRepeatTasks().add(tasks = new TaskQueue());
+		setTaskName(tasks, "queued tasks");
+		setTaskName(tickWaiter, "tick wait");
+		setTaskName(messageProcessor, "process messages");
+		setTaskName(worldUpdater, "world update");
+		setTaskName(updateSender, "network send");
 	}
 	
 	public World getWorld() {
@@ -28,25 +43,41 @@ public final class ServerRepeatUpdater extends RepeatUpdater {
 	
 	public void startWorld(World world) {
 		if(this.world == null)
-			getRepeatTasks().add(worldUpdater);
+			getRepeatTasks().addAll(List.of(tickWaiter, messageProcessor, worldUpdater, updateSender));
 		this.world = world;
-		previousTime = System.nanoTime();
+		scheduler.reset();
+	}
+	
+	private void awaitTick() {
+		ticks = scheduler.awaitTick();
 	}
 	
 	private void updateWorld() {
-		previousTime = Utility.updateWorld(world, previousTime, SharedConstants.MAX_TIMESTEP, SharedConstants.TIME_SCALE_NANOSECONDS);
+		//run the tick and any ticks that were missed while the previous tick overran
+		for(; ticks > 0; ticks--) {
+			world.update(tickTime);
+		}
+	}
+	
+	private void sendUpdates() {
 		if(System.nanoTime() - lastSendTime > NETWORK_SEND_INTERVAL_NANOSECONDS) {
-			for(Entity e : world)
-				server.sendUpdateEntity(e);
+			for(Entity e : world) {
+				if(!e.isSleeping()) //sleeping entities don't change
+					server.sendUpdateEntity(e);
+			}
+			server.streamChunks();
 			server.broadcastPing(); //send a reliable packet to make sure clients are connected
 			lastSendTime = System.nanoTime();
 		}
-		
-		Utility.sleep(1);
+	}
+	
+	/** @return the scheduler that paces the world updates **/
+	public TickScheduler getScheduler() {
+		return scheduler;
 	}
 	
 	public void stopWorld() {
-		getRepeatTasks().remove(worldUpdater);
+		getRepeatTasks().removeAll(List.of(tickWaiter, messageProcessor, worldUpdater, updateSender));
 	}
 	
 	public void submitTask(Runnable task) {
@@ -11,18 +11,23 @@ import ritzow.sandbox.data.ByteUtil;
 import ritzow.sandbox.data.Deserializer;
 import ritzow.sandbox.network.Protocol;
 import ritzow.sandbox.server.Server.ClientState;
+import ritzow.sandbox.server.Server.ExecutionMode;
 import ritzow.sandbox.world.World;
+import ritzow.sandbox.world.block.BlockRegistry;
 import ritzow.sandbox.world.block.DirtBlock;
 import ritzow.sandbox.world.block.GrassBlock;
 import ritzow.sandbox.world.entity.PlayerEntity;
 
 public final class StartServer {
 	private static final boolean SAVE_WORLD = false;
+	private static final ExecutionMode EXECUTION_MODE = 
+			Server.supportsVirtualThreads() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
 	
 	public static void main(String... args) throws SocketException {
 		Thread.currentThread().setName("Server Setup");
 		
-		Server server = new Server(new InetSocketAddress(Protocol.DEFAULT_SERVER_UDP_PORT));
+		Server server = new Server(new InetSocketAddress(Protocol.DEFAULT_SERVER_UDP_PORT), EXECUTION_MODE);
+		System.out.println("Running client tasks on " + EXECUTION_MODE.toString().toLowerCase() + " threads.");
 
 		//the save file to try to load the world from
 		final File saveFile = new File(args.length > 0 ? args[0] : "data/worlds/world.dat");
@@ -32,7 +37,7 @@ public final class StartServer {
 		server.start(world);
 		
 		System.out.println("Startup Complete.");
-		System.out.println("Type 'exit' to stop server or 'list' to list connected clients");
+		System.out.println("Type 'exit' to stop server, 'list' to list connected clients, or 'timings' to show update timings");
 		try(Scanner scanner = new Scanner(System.in)) {
 			String next;
 			reader: while(true) {
@@ -52,6 +57,9 @@ public final class StartServer {
 						}
 					}
 					break;
+				case "timings":
+					System.out.println(server.formatTimings());
+					break;
 				case "disconnect":
 					server.disconnectAll("server manual disconnect");
 					break;
@@ -105,16 +113,19 @@ public final class StartServer {
 	
 	public static World generateWorld(int width, int height, Server server) {
 		World world = new World(width, height, 0.016f);
-		for(int column = 0; column < world.getForeground().getWidth(); column++) {
-			double halfheight = world.getForeground().getHeight()/2;
-			halfheight += (Math.sin(column * 0.1f) + 1) * (world.getForeground().getHeight() - halfheight) * 0.05f;
-			for(int row = 0; row < halfheight; row++) {
-				world.getForeground().set(column, row, new DirtBlock());
-				world.getBackground().set(column, row, new DirtBlock());
-			}
-			world.getForeground().set(column, (int)halfheight, new GrassBlock());
-			world.getBackground().set(column, (int)halfheight, new DirtBlock());
+		DirtBlock dirt = BlockRegistry.getInstance(DirtBlock.class);
+		GrassBlock grass = BlockRegistry.getInstance(GrassBlock.class);
+		
+		//compute the height of the terrain in each column, then generate every column at once
+		int[] surface = new int[width];
+		for(int column = 0; column < width; column++) {
+			double halfheight = height/2;
+			halfheight += (Math.sin(column * 0.1f) + 1) * (height - halfheight) * 0.05f;
+			surface[column] = (int)halfheight;
 		}
+		world.getForeground().apply(0, 0, width, height, (x, y, block) -> 
+			y < surface[x] ? dirt : y == surface[x] ? grass : null);
+		world.getBackground().apply(0, 0, width, height, (x, y, block) -> y <= surface[x] ? dirt : null);
 		return world;
 	}
 }
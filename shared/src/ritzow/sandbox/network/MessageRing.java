@@ -0,0 +1,164 @@
+package ritzow.sandbox.network;
+
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue of received messages that any number of threads can add to and one thread removes from in
+ * batches. The queue is a ring of slots that each have their own buffer, allocated once, so adding a message
+ * copies it into the next free slot instead of allocating. A slot is reused once the consumer has processed
+ * the message in it, and when every slot is in use the queue handles new messages according to its
+ * {@link OverflowPolicy}.
+ * <p>
+ * Each slot has a sequence number that says whether it is waiting to be filled or waiting to be processed.
+ * Producers claim slots by incrementing a shared counter, and publish a message by advancing the slot's sequence,
+ * so producers never lock and the consumer only reads slots whose messages have been fully copied.
+ * @author Solomon Ritzow
+ */
+public final class MessageRing {
+	/** how long a producer parks between checks for a free slot with {@link OverflowPolicy#WAIT} **/
+	private static final long WAIT_NANOSECONDS = 50_000;
+
+	/** What to do with a message that is received when every slot is in use **/
+	public static enum OverflowPolicy {
+		/** wait until the consumer frees a slot, so that the receiving thread stops receiving until then **/
+		WAIT,
+
+		/**
+		 * reject the message, see {@link NetworkController.MessageReceiver}, so that a reliable message is not
+		 * acknowledged and will be resent, and an unreliable message is dropped
+		 **/
+		DROP
+	}
+
+	/** Processes a message removed from the queue **/
+	@FunctionalInterface
+	public interface MessageHandler {
+		/**
+		 * @param sender the address the message was received from
+		 * @param messageID the ID of the message
+		 * @param data the buffer containing the message, which is reused once this method returns
+		 * @param length the length of the message, which starts at the beginning of the buffer
+		 */
+		void handle(InetSocketAddress sender, int messageID, byte[] data, int length);
+	}
+
+	private static final class Slot {
+		/** equal to the slot's position when it is free, and to the position plus one when it is filled **/
+		private volatile long sequence;
+		private InetSocketAddress sender;
+		private int messageID, length;
+		private final byte[] data;
+
+		private Slot(long sequence, int messageSize) {
+			this.sequence = sequence;
+			this.data = new byte[messageSize];
+		}
+	}
+
+	private final Slot[] slots;
+	private final int mask;
+	private final OverflowPolicy policy;
+
+	/** the position of the next slot to fill, shared by producers **/
+	private final AtomicLong tail;
+
+	/** the position of the next slot to process, only used by the consumer **/
+	private long head;
+
+	private final AtomicLong dropped;
+
+	/**
+	 * @param capacity the number of slots, rounded up to a power of two
+	 * @param messageSize the size of the largest message that can be added
+	 * @param policy what to do when every slot is in use
+	 */
+	public MessageRing(int capacity, int messageSize, OverflowPolicy policy) {
+		if(capacity <= 0 || capacity > 1 << 30)
+			throw new IllegalArgumentException("capacity must be positive and at most 2^30");
+		int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+		this.slots = new Slot[size];
+		for(int i = 0; i < size; i++) {
+			slots[i] = new Slot(i, messageSize);
+		}
+		this.mask = size - 1;
+		this.policy = Objects.requireNonNull(policy);
+		this.tail = new AtomicLong();
+		this.dropped = new AtomicLong();
+	}
+
+	/**
+	 * Copies a message into the next free slot. Can be called by any thread.
+	 * @param sender the address the message was received from
+	 * @param messageID the ID of the message
+	 * @param buffer the buffer containing the message
+	 * @param offset the index of the message in the buffer
+	 * @param length the length of the message
+	 * @return true if the message was added, false if every slot was in use and the policy is {@link OverflowPolicy#DROP}
+	 * @throws IllegalArgumentException if the message is larger than the slots
+	 */
+	public boolean offer(InetSocketAddress sender, int messageID, byte[] buffer, int offset, int length) {
+		if(length > slots[0].data.length)
+			throw new IllegalArgumentException("message length " + length + " is greater than the slot size " + slots[0].data.length);
+		Slot slot;
+		long position;
+		while(true) {
+			position = tail.get();
+			slot = slots[(int)position & mask];
+			long difference = slot.sequence - position;
+			if(difference == 0) {
+				if(tail.compareAndSet(position, position + 1))
+					break;
+			} else if(difference < 0) { //the slot still holds the message from one lap ago
+				if(policy == OverflowPolicy.DROP) {
+					dropped.incrementAndGet();
+					return false;
+				}
+				LockSupport.parkNanos(WAIT_NANOSECONDS);
+			} //else: another producer claimed the slot first, try the next one
+		}
+		slot.sender = sender;
+		slot.messageID = messageID;
+		slot.length = length;
+		System.arraycopy(buffer, offset, slot.data, 0, length);
+		slot.sequence = position + 1; //publish the message to the consumer
+		return true;
+	}
+
+	/**
+	 * Processes the messages that were added before this method was called, in the order they were added,
+	 * and frees their slots. Must only be called by one thread at a time.
+	 * @param handler the action to perform on each message
+	 * @return the number of messages processed
+	 */
+	public int drain(MessageHandler handler) {
+		long end = tail.get();
+		int count = 0;
+		while(head < end) {
+			Slot slot = slots[(int)head & mask];
+			if(slot.sequence != head + 1)
+				break; //the producer that claimed the slot has not finished copying its message
+			try {
+				handler.handle(slot.sender, slot.messageID, slot.data, slot.length);
+			} finally {
+				slot.sender = null;
+				slot.sequence = head + slots.length; //free the slot for the next lap
+				head++;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** @return the number of slots **/
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/** @return the number of messages rejected because every slot was in use **/
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+}
@@ -7,17 +7,17 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import ritzow.sandbox.data.ByteUtil;
 import ritzow.sandbox.data.DataWriter;
 import ritzow.sandbox.data.UncheckedByteArrayDataWriter;
+import ritzow.sandbox.util.TimerWheel;
 import ritzow.sandbox.util.Utility;
 
 /** Provides common functionality of the client and server. Manages incoming and outgoing packets. **/
@@ -25,14 +25,27 @@ public class NetworkController {
 	
 	private static final int STARTING_SEND_ID = 0;
 	
-	private static final class MessageAddressPair {
-		private final InetSocketAddress recipient;
+	/** the length of each tick of the resend timer wheel, which is the precision of resend intervals, and the number of ticks per turn **/
+	private static final long RESEND_TICK_NANOSECONDS = Utility.millisToNanos(5);
+	private static final int RESEND_WHEEL_SIZE = 512;
+	
+	/** A reliable message that has been sent and not yet acknowledged **/
+	private static final class PendingMessage {
+		private final ConnectionState connection;
 		private final int messageID;
-		private volatile boolean received;
+		private final DatagramPacket packet;
+		private final long resendNanoseconds;
+		private final CompletableFuture<Void> result;
+		private int attemptsRemaining;
+		private volatile TimerWheel.Timeout resend;
 		
-		public MessageAddressPair(InetSocketAddress recipient, int messageID) {
+		PendingMessage(ConnectionState connection, int messageID, DatagramPacket packet, int attempts, int resendInterval) {
+			this.connection = connection;
 			this.messageID = messageID;
-			this.recipient = recipient;
+			this.packet = packet;
+			this.attemptsRemaining = attempts;
+			this.resendNanoseconds = Utility.millisToNanos(resendInterval);
+			this.result = new CompletableFuture<>();
 		}
 	}
 	
@@ -40,11 +53,15 @@ public class NetworkController {
 	    private int nextReliableReceiveID, nextUnreliableReceiveID;
 	    private final AtomicInteger reliableSendID, unreliableSendID;
 	    
+	    /** the reliable messages sent to the connection that have not been acknowledged, keyed by message ID **/
+	    private final Map<Integer, PendingMessage> pending;
+	    
 	    public ConnectionState() {
 	        this.nextReliableReceiveID = 0;
 	        this.nextUnreliableReceiveID = 0;
 	        this.reliableSendID = new AtomicInteger(STARTING_SEND_ID);
 	        this.unreliableSendID = new AtomicInteger(STARTING_SEND_ID);
+	        this.pending = new ConcurrentHashMap<>();
 	    }
 	    
 	    public int nextReliableSendID() {
@@ -58,10 +75,13 @@ public class NetworkController {
 	
 	//fields
 	private final DatagramSocket socket;
-	private final Queue<MessageAddressPair> reliableQueue;
+	private final TimerWheel resends;
 	private final Map<InetSocketAddress, ConnectionState> connections;
+	
+	/** every reliable message that has not been acknowledged, including messages to connections that have been removed **/
+	private final Set<PendingMessage> pending;
 	private final ThreadLocal<DatagramPacket> packets;
-	private final MessageProcessor messageProcessor;
+	private final MessageReceiver messageReceiver;
 	private volatile boolean started, exit;
 	
 	private static final int HEADER_SIZE = 5;
@@ -70,10 +90,18 @@ public class NetworkController {
 	private static final byte RESPONSE_TYPE = 1, RELIABLE_TYPE = 2, UNRELIABLE_TYPE = 3;
 	
 	public NetworkController(InetSocketAddress bindAddress, MessageProcessor processor) throws SocketException {
-		messageProcessor = processor;
+		this(bindAddress, (sender, messageID, buffer, offset, length) -> {
+			processor.process(sender, messageID, Arrays.copyOfRange(buffer, offset, offset + length));
+			return true;
+		});
+	}
+	
+	public NetworkController(InetSocketAddress bindAddress, MessageReceiver receiver) throws SocketException {
+		messageReceiver = receiver;
 		socket = new DatagramSocket(bindAddress);
-		reliableQueue = new ConcurrentLinkedQueue<MessageAddressPair>();
-		connections = Collections.synchronizedMap(new HashMap<InetSocketAddress, ConnectionState>());
+		resends = new TimerWheel(RESEND_TICK_NANOSECONDS, RESEND_WHEEL_SIZE);
+		connections = new ConcurrentHashMap<InetSocketAddress, ConnectionState>();
+		pending = ConcurrentHashMap.newKeySet();
 		packets = ThreadLocal.withInitial(() -> new DatagramPacket(new byte[Protocol.MAX_MESSAGE_LENGTH + 5], 0));
 	}
 	
@@ -91,41 +119,97 @@ public class NetworkController {
 		void process(InetSocketAddress sender, int messageID, byte[] data);
 	}
 	
+	/**
+	 * Implemented by a client/server to receive messages directly from the receive buffer, 
+	 * for example to copy them into a {@link MessageRing} without allocating a copy of each message.
+	 */
+	@FunctionalInterface
+	public interface MessageReceiver {
+		/**
+		 * Called on the network controller thread for each message that is received.
+		 * @param sender the address the message was received from
+		 * @param messageID the unique ID of the message received
+		 * @param buffer the receive buffer, which is reused once this method returns
+		 * @param offset the index of the message body in the buffer
+		 * @param length the length of the message body
+		 * @return true if the message was accepted, false to not acknowledge a reliable message so that it is resent
+		 */
+		boolean receive(InetSocketAddress sender, int messageID, byte[] buffer, int offset, int length);
+	}
+	
 	/**
 	 * Send a message reliably, blocking until the message is received or a specified number 
-	 * of attempts have been made to send the message.
+	 * of attempts have been made to send the message, see {@link #sendReliableAsync(InetSocketAddress, byte[], int, int)}.
+	 * The sending thread is parked while it waits rather than waiting on a monitor, so a virtual thread 
+	 * does not pin its carrier thread.
 	 * @param recipient the address to send the data to.
-	 * @param messageID the unique ID of the message, must be one greater than the last message sent to the specified recipient.
 	 * @param data the data to send to the recipient.
+	 * @param attempts the maximum number of times to send the message.
+	 * @param resendInterval the number of milliseconds to wait for the message to be acknowledged after each attempt, or zero to wait indefinitely after the first.
 	 * @throws TimeoutException if all send attempts have occurred but no message was received
 	 */
 	public void sendReliable(InetSocketAddress recipient, byte[] data, int attempts, int resendInterval) throws TimeoutException {
+		try {
+			sendReliableAsync(recipient, data, attempts, resendInterval).get();
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof TimeoutException)
+				throw new TimeoutException(e.getCause());
+			throw new RuntimeException(e.getCause());
+		} catch(InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Send a message reliably without waiting for it to be received. The message is resent on the network controller's 
+	 * timer wheel until it is acknowledged or a specified number of attempts have been made to send the message.
+	 * @param recipient the address to send the data to.
+	 * @param data the data to send to the recipient, which is copied before this method returns.
+	 * @param attempts the maximum number of times to send the message.
+	 * @param resendInterval the number of milliseconds to wait for the message to be acknowledged after each attempt, or zero to wait indefinitely after the first.
+	 * @return a future that completes when the message is acknowledged, or completes exceptionally with a {@link TimeoutException} 
+	 * if all send attempts have occurred but no message was received, or with an {@link IOException} if the message could not be sent.
+	 */
+	public CompletableFuture<Void> sendReliableAsync(InetSocketAddress recipient, byte[] data, int attempts, int resendInterval) {
 		if(attempts < 1)
 			throw new IllegalArgumentException("attempts must be greater than 0");
 		if(resendInterval < 0)
 			throw new IllegalArgumentException("resendInterval must be greater than or equal to zero");
-		int messageID = getState(recipient).nextReliableSendID();
-		DatagramPacket packet = getPacket(recipient, RELIABLE_TYPE, messageID, data);
-		MessageAddressPair pair = new MessageAddressPair(recipient, messageID);
-		synchronized(pair) {
-			reliableQueue.add(pair);
-			int attemptsRemaining = attempts;
-			while(attemptsRemaining > 0 && !pair.received && !socket.isClosed()) {
-				try {
-					socket.send(packet);
-					attemptsRemaining--;
-					pair.wait(resendInterval); //wait for ack to be received by network controller receiver
-				} catch (InterruptedException | IOException e) {
-					throw new RuntimeException(e);
-				}
-			}
-			
-			if(!pair.received) {
-				reliableQueue.remove(pair); //remove the timed out message
-				throw new TimeoutException();
+		ConnectionState connection = getState(recipient);
+		int messageID = connection.nextReliableSendID();
+		DatagramPacket packet = new DatagramPacket(new byte[data.length + HEADER_SIZE], 0); //kept until the message is acknowledged
+		setupDatagram(packet, recipient, RELIABLE_TYPE, messageID, data.length);
+		ByteUtil.copy(data, packet.getData(), HEADER_SIZE);
+		PendingMessage message = new PendingMessage(connection, messageID, packet, attempts, resendInterval);
+		pending.add(message);
+		connection.pending.put(messageID, message);
+		transmit(message);
+		return message.result;
+	}
+	
+	/** Sends a pending message and schedules the next attempt, or fails the message if no attempts remain **/
+	private void transmit(PendingMessage message) {
+		if(message.result.isDone())
+			return;
+		if(message.attemptsRemaining == 0 || exit || socket.isClosed()) { //the timer wheel stops when the socket closes
+			fail(message, new TimeoutException());
+		} else {
+			try {
+				socket.send(message.packet);
+				message.attemptsRemaining--;
+				if(message.resendNanoseconds > 0)
+					message.resend = resends.schedule(() -> transmit(message), message.resendNanoseconds);
+			} catch(IOException e) {
+				fail(message, e);
 			}
 		}
 	}
+	
+	private void fail(PendingMessage message, Throwable cause) {
+		pending.remove(message);
+		if(message.connection.pending.remove(message.messageID, message))
+			message.result.completeExceptionally(cause);
+	}
 
 	/**
 	 * Sends a message without ensuring it is received by the recipient.
@@ -199,33 +283,34 @@ public class NetworkController {
 		if(started)
 			throw new IllegalStateException("network controller already started");
 		new Thread(this::run, "Network Controller").start();
+		resends.start("Network Resend Timer");
 		started = true;
 	}
 	
+	/** 
+	 * Closes the socket and fails every reliable message that has not been acknowledged with a {@link TimeoutException},
+	 * including messages sent to connections that have since been removed, since they will no longer be resent
+	 **/
 	public void stop() {
 		exit = true;
 		socket.close();
+		resends.stop();
+		for(PendingMessage message : pending) {
+			fail(message, new TimeoutException());
+		}
 	}
 	
 	public InetSocketAddress getBindAddress() {
 		return (InetSocketAddress)socket.getLocalSocketAddress();
 	}
 	
-	private static byte[] getDataCopy(DatagramPacket buffer) {
-		return Arrays.copyOfRange(buffer.getData(), buffer.getOffset() + HEADER_SIZE, buffer.getOffset() + buffer.getLength());
-	}
-	
-	private InetSocketAddress getAddress(DatagramPacket packet) { //TODO is this more or less efficient?
-		InetSocketAddress address = (InetSocketAddress)packet.getSocketAddress();
-		connections.put(address, connections.get(address));
-		return address;
+	private boolean receive(DatagramPacket buffer, InetSocketAddress sender, int messageID) {
+		return messageReceiver.receive(sender, messageID, buffer.getData(), 
+				buffer.getOffset() + HEADER_SIZE, buffer.getLength() - HEADER_SIZE);
 	}
 	
 	private ConnectionState getState(InetSocketAddress address) {
-		ConnectionState state = connections.get(address);
-		if(state == null)
-			connections.put(address, state = new ConnectionState());
-		return state;
+		return connections.computeIfAbsent(address, key -> new ConnectionState());
 	}
 	
 	private void run() {
@@ -239,7 +324,7 @@ public class NetworkController {
 				socket.receive(buffer); //wait for a packet to be received
 				//ignore received packets that are not large enough to contain the full header
 				if(buffer.getLength() >= 5) {
-					InetSocketAddress sender = getAddress(buffer);
+					InetSocketAddress sender = (InetSocketAddress)buffer.getSocketAddress();
 					//type of message (RESPONSE, RELIABLE, UNRELIABLE)
 					byte type = buffer.getData()[buffer.getOffset()];
 					//received ID or messageID for ack.
@@ -258,27 +343,23 @@ public class NetworkController {
 	private void processPacket(DatagramPacket buffer, InetSocketAddress sender, byte type, int messageID) {
 		switch(type) {
 		case RESPONSE_TYPE:
-			synchronized(reliableQueue) {
-				Iterator<MessageAddressPair> iterator = reliableQueue.iterator();
-				while(iterator.hasNext()) {
-					MessageAddressPair pair = iterator.next();
-					if(pair.recipient.equals(sender)) { //find first message addressed to the sender of the ack
-						if(pair.messageID == messageID) { //if the ack is for the correct message (oldest awaiting ack)
-							iterator.remove();
-							pair.received = true;
-							Utility.notify(pair); //notify waiting send method
-						} break;
-					}
-				}
-			} break;
+			ConnectionState responseState = connections.get(sender);
+			PendingMessage message = responseState == null ? null : responseState.pending.remove(messageID);
+			if(message != null) {
+				TimerWheel.Timeout resend = message.resend;
+				if(resend != null)
+					resend.cancel();
+				pending.remove(message);
+				message.result.complete(null); //complete the send, the message won't be resent
+			} break; //else: the message was already acknowledged or timed out
 		case RELIABLE_TYPE:
 			ConnectionState reliableState = getState(sender);
 			if(messageID == reliableState.nextReliableReceiveID) {
-				//if the message is the next one, process it and update last message
-				InetSocketAddress address = sender;
-				sendResponse(address, messageID);
-				reliableState.nextReliableReceiveID++;
-				messageProcessor.process(address, messageID, getDataCopy(buffer));
+				//if the message is the next one and is accepted, acknowledge it and update last message
+				if(receive(buffer, sender, messageID)) {
+					sendResponse(sender, messageID);
+					reliableState.nextReliableReceiveID++;
+				}
 			} else if(messageID < reliableState.nextReliableReceiveID) { //message already received
 				sendResponse(sender, messageID);
 			} break; //else: message received too early
@@ -286,7 +367,7 @@ public class NetworkController {
 			ConnectionState unreliableState = getState(sender);
 			if(messageID >= unreliableState.nextUnreliableReceiveID) {
 				unreliableState.nextUnreliableReceiveID = messageID + 1;
-				messageProcessor.process(sender, messageID, getDataCopy(buffer));
+				receive(buffer, sender, messageID);
 			} break; //else: message is outdated
 		}
 	}
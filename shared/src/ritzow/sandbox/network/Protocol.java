@@ -31,7 +31,9 @@ public final class Protocol {
 		CLIENT_DISCONNECT = 11,
 		CLIENT_PLAYER_ACTION = 12,
 		CLIENT_BREAK_BLOCK = 13,
-		PING = 14;
+		PING = 14,
+		SERVER_LOAD_CHUNKS = 15,
+		SERVER_UNLOAD_CHUNKS = 16;
 	
 	/** Serialization Type ID **/
 	public static final short
@@ -44,7 +46,8 @@ public final class Protocol {
 		INVENTORY = 7,
 		DIRT_BLOCK = 8,
 		GRASS_BLOCK = 9,
-		RED_BLOCK = 10;
+		RED_BLOCK = 10,
+		WORLD_CHUNK = 11;
 	
 	public static byte[] buildConsoleMessage(String message) {
 		byte[] msg = message.getBytes(Protocol.CHARSET);
@@ -2,7 +2,7 @@ package ritzow.sandbox.util;
 
 /**
  * Instances of Exitable can be passed to the Synchronizer utility to wait until exited. When an Exitable finishes, the isFinished method should return true and
- * the object should call notifyAll()
+ * the object should call {@code Utility.notify(this)}
  * @author Solomon Ritzow
  *
  */
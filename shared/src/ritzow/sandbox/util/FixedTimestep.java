@@ -0,0 +1,68 @@
+package ritzow.sandbox.util;
+
+import ritzow.sandbox.world.World;
+
+/**
+ * Updates a World with a constant timestep, so that the simulation behaves the same regardless of how often
+ * it is updated. Real time is accumulated between calls to {@link #update(World)} and consumed one tick at a time,
+ * and the leftover fraction of a tick can be used to interpolate entity positions when rendering. Not thread safe.
+ * @author Solomon Ritzow
+ */
+public final class FixedTimestep {
+	private final long tickNanoseconds;
+	private final float tickTime;
+	private final int maxSteps;
+	private long previousTime, accumulated;
+
+	/**
+	 * @param tickRate the number of world updates per second
+	 * @param timeScale the time conversion (from nanoseconds to game time)
+	 * @param maxSteps the maximum number of world updates to run at once when catching up
+	 */
+	public FixedTimestep(int tickRate, float timeScale, int maxSteps) {
+		if(tickRate <= 0 || maxSteps <= 0)
+			throw new IllegalArgumentException("tickRate and maxSteps must be positive");
+		this.tickNanoseconds = 1_000_000_000L / tickRate;
+		this.tickTime = tickNanoseconds / timeScale;
+		this.maxSteps = maxSteps;
+		reset();
+	}
+
+	/** Discards any accumulated time and starts measuring time from now, for example after the updates were paused **/
+	public void reset() {
+		previousTime = System.nanoTime();
+		accumulated = 0;
+	}
+
+	/**
+	 * Updates the world once for each whole tick of time that has passed, at most maxSteps times. If the world
+	 * is more than maxSteps ticks behind the rest of the time is dropped, so that a slow update can't cause
+	 * more updates to be run afterwards.
+	 * @param world the world to update
+	 * @return the number of world updates that were run
+	 */
+	public int update(World world) {
+		long current = System.nanoTime();
+		accumulated += current - previousTime;
+		previousTime = current;
+		int steps = 0;
+		while(accumulated >= tickNanoseconds && steps < maxSteps) {
+			world.update(tickTime);
+			accumulated -= tickNanoseconds;
+			steps++;
+		}
+		if(accumulated >= tickNanoseconds)
+			accumulated %= tickNanoseconds;
+		return steps;
+	}
+
+	/** @return the fraction of a tick that has accumulated since the last world update, from 0 (inclusive) to 1 (exclusive) **/
+	public float getInterpolation() {
+		return (float)accumulated / tickNanoseconds;
+	}
+
+	/** @return the amount of game time simulated by each world update **/
+	public float getTickTime() {
+		return tickTime;
+	}
+}
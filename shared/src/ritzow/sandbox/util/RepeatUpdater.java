@@ -5,19 +5,47 @@ import java.util.Collections;
 //import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * RepeatRunnable will repeatedly run any Runnables provided via addRepeatRunnable(s) in the order they were added
- * once start is called, until stop is called.
+ * once start is called, until stop is called. The duration of each task is recorded, see {@link #formatTimings()}.
  * @author Solomon Ritzow
  */
 public class RepeatUpdater {
+	/** how long the task durations are reported for, and how many parts the window is divided into **/
+	private static final long TIMING_WINDOW_NANOSECONDS = Utility.millisToNanos(10_000);
+	private static final int TIMING_SUB_WINDOWS = 5;
+	
+	/** The name and recent durations of a task **/
+	private static final class TaskTiming {
+		private volatile String name;
+		private final TimingHistogram durations;
+		
+		TaskTiming(Runnable task) {
+			this.name = defaultName(task);
+			this.durations = new TimingHistogram(TIMING_WINDOW_NANOSECONDS, TIMING_SUB_WINDOWS);
+		}
+		
+		/** @return the simple name of the task's class, or of the class a lambda or anonymous class was declared in **/
+		private static String defaultName(Runnable task) {
+			Class<?> type = task.getClass();
+			if(!type.isSynthetic() && !type.isAnonymousClass())
+				return type.getSimpleName();
+			String name = type.getName().substring(type.getName().lastIndexOf('.') + 1);
+			return (name.indexOf('$') == -1 ? name : name.substring(0, name.indexOf('$'))) + " task";
+		}
+	}
+	
 	private Thread thread;
 	private final Object resumeLock;
 	private volatile boolean paused, exit;
 	private final List<Runnable> runnables;
 	private final Runnable pre, post;
+	private final Map<Runnable, TaskTiming> timings;
+	private final TimingHistogram loopTiming;
 	
 	public RepeatUpdater(Runnable onStart, Runnable onExit) {
 		this.runnables = Collections.synchronizedList(new LinkedList<Runnable>());
@@ -25,6 +53,8 @@ public class RepeatUpdater {
 		this.pre = Objects.requireNonNull(onStart);
 		this.post = Objects.requireNonNull(onExit);
 		resumeLock = new Object();
+		this.timings = new ConcurrentHashMap<>();
+		this.loopTiming = new TimingHistogram(TIMING_WINDOW_NANOSECONDS, TIMING_SUB_WINDOWS);
 	}
 	
 	public RepeatUpdater() {
@@ -80,16 +110,61 @@ public class RepeatUpdater {
 		return runnables;
 	}
 	
+	/**
+	 * Sets the name of a task in the timing report, which is otherwise the name of the task's class.
+	 * @param task a task that has been or will be added
+	 * @param name the name to report the task's durations under
+	 * @return this updater
+	 */
+	public RepeatUpdater setTaskName(Runnable task, String name) {
+		timings.computeIfAbsent(task, TaskTiming::new).name = Objects.requireNonNull(name);
+		return this;
+	}
+	
+	/**
+	 * Formats the durations of each task, and of each run through all of the tasks, over the last ten seconds as
+	 * a table with one line per task. Durations are recorded into buckets and rounded up by at most 12.5%.
+	 * @return the number of times each task ran and its median, 99th percentile, and longest durations
+	 */
+	public String formatTimings() {
+		StringBuilder report = new StringBuilder(String.format("%-24s%10s%12s%12s%12s%n", 
+				"task", "count", "p50 (ms)", "p99 (ms)", "max (ms)"));
+		for(Runnable task : runnables.toArray(new Runnable[0])) {
+			TaskTiming timing = timings.get(task);
+			if(timing != null)
+				formatTiming(report, timing.name, timing.durations);
+		}
+		formatTiming(report, "all tasks", loopTiming);
+		return report.toString();
+	}
+	
+	private static void formatTiming(StringBuilder report, String name, TimingHistogram durations) {
+		report.append(String.format("%-24s%10d%12.3f%12.3f%12.3f%n", name, durations.getCount(), 
+				durations.getPercentile(0.5) / 1_000_000.0, durations.getPercentile(0.99) / 1_000_000.0, 
+				durations.getMaximum() / 1_000_000.0));
+	}
+	
 	private void run() {
 		pre.run();
 		paused = false;
 		Utility.notify(resumeLock);
 		
 		while(!exit) {
-			runnables.forEach(r -> r.run());
+			long start = System.nanoTime();
+			runnables.forEach(this::runTimed);
+			loopTiming.record(start, System.nanoTime());
 			Utility.waitOnCondition(resumeLock, () -> !paused);
 		}
 		
 		post.run();
 	}
+	
+	private void runTimed(Runnable task) {
+		TaskTiming timing = timings.get(task);
+		if(timing == null)
+			timing = timings.computeIfAbsent(task, TaskTiming::new);
+		long start = System.nanoTime();
+		task.run();
+		timing.durations.record(start, System.nanoTime());
+	}
 }
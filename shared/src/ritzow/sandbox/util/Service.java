@@ -1,5 +1,11 @@
 package ritzow.sandbox.util;
 
+/**
+ * A service that runs on its own thread. When its setup completes, the isSetupComplete method should return true and
+ * the object should call {@code Utility.notify(this)}
+ * @author Solomon Ritzow
+ *
+ */
 public interface Service extends Runnable, Exitable {
 	public boolean isSetupComplete();
 	
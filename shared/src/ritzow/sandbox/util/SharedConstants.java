@@ -2,5 +2,10 @@ package ritzow.sandbox.util;
 
 public final class SharedConstants {
 	public static final float TIME_SCALE_NANOSECONDS = 16_000_000f;
-	public static final float MAX_TIMESTEP = 2;
+	
+	/** the number of world updates per second when updating with a {@link FixedTimestep} **/
+	public static final int TICK_RATE = 60;
+	
+	/** the maximum number of world updates to run at once when a {@link FixedTimestep} falls behind **/
+	public static final int MAX_CATCH_UP_STEPS = 5;
 }
@@ -0,0 +1,133 @@
+package ritzow.sandbox.util;
+
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a loop to a target number of ticks per second. Each tick has a deadline on a fixed schedule, and
+ * {@link #awaitTick()} parks the thread until shortly before the next deadline, then spins until the deadline,
+ * since parking alone can wake up later than requested. When a tick finishes after the next deadline has
+ * already passed the tick has overrun, and the scheduler handles the missed deadlines according to its
+ * {@link OverrunPolicy}. The statistics can be read from any thread, but only one thread may await ticks.
+ * @author Solomon Ritzow
+ */
+public final class TickScheduler {
+	/** how long before a deadline to stop parking and start spinning **/
+	private static final long SPIN_NANOSECONDS = 100_000;
+
+	/** What to do with the deadlines that passed while a tick was overrunning **/
+	public static enum OverrunPolicy {
+		/** run one tick immediately, skip the missed ticks, and keep the original schedule **/
+		SKIP,
+
+		/** run the missed ticks immediately, up to the maximum number of catch up ticks, and skip the rest **/
+		CATCH_UP,
+
+		/** run one tick immediately and schedule the following ticks from now, so that no ticks are skipped **/
+		STRETCH
+	}
+
+	private final long tickNanoseconds;
+	private final OverrunPolicy policy;
+	private final int maxCatchUpTicks;
+	private long deadline;
+	private boolean started;
+	private volatile long ticks, overruns, skipped;
+
+	/**
+	 * @param ticksPerSecond the target number of ticks per second
+	 * @param policy what to do when a tick overruns
+	 * @param maxCatchUpTicks the maximum number of ticks to run at once with {@link OverrunPolicy#CATCH_UP}
+	 */
+	public TickScheduler(int ticksPerSecond, OverrunPolicy policy, int maxCatchUpTicks) {
+		if(ticksPerSecond <= 0 || maxCatchUpTicks <= 0)
+			throw new IllegalArgumentException("ticksPerSecond and maxCatchUpTicks must be positive");
+		this.tickNanoseconds = 1_000_000_000L / ticksPerSecond;
+		this.policy = Objects.requireNonNull(policy);
+		this.maxCatchUpTicks = maxCatchUpTicks;
+		reset();
+	}
+
+	/** Runs the next tick immediately and schedules the following ticks from then, for example after the ticks were paused **/
+	public void reset() {
+		started = false;
+	}
+
+	/**
+	 * Waits until the next tick is due.
+	 * @return the number of ticks to run now, which is more than one only when catching up after an overrun
+	 */
+	public int awaitTick() {
+		long now = System.nanoTime();
+		int run;
+		if(!started) {
+			started = true;
+			deadline = now + tickNanoseconds;
+			run = 1;
+		} else if(now - deadline <= 0) {
+			waitUntil(deadline);
+			deadline += tickNanoseconds;
+			run = 1;
+		} else {
+			//the previous tick finished after this tick's deadline, count the deadlines that have passed
+			long due = (now - deadline) / tickNanoseconds + 1;
+			overruns++;
+			switch(policy) {
+				case SKIP:
+					run = 1;
+					deadline += due * tickNanoseconds;
+					break;
+				case CATCH_UP:
+					run = (int)Math.min(due, maxCatchUpTicks);
+					deadline += due * tickNanoseconds;
+					break;
+				case STRETCH:
+					run = 1;
+					due = 1;
+					deadline = now + tickNanoseconds;
+					break;
+				default:
+					throw new UnsupportedOperationException("unknown overrun policy " + policy);
+			}
+			skipped += due - run;
+		}
+		ticks += run;
+		return run;
+	}
+
+	/** Parks until shortly before the time, then spins until it **/
+	private static void waitUntil(long time) {
+		long remaining;
+		while((remaining = time - System.nanoTime()) > SPIN_NANOSECONDS) {
+			LockSupport.parkNanos(remaining - SPIN_NANOSECONDS);
+		}
+		while(time - System.nanoTime() > 0) {
+			Thread.onSpinWait();
+		}
+	}
+
+	/** @return the length of each tick in nanoseconds **/
+	public long getTickNanoseconds() {
+		return tickNanoseconds;
+	}
+
+	/** @return the overrun policy of the scheduler **/
+	public OverrunPolicy getOverrunPolicy() {
+		return policy;
+	}
+
+	/** @return the number of ticks that have been run **/
+	public long getTickCount() {
+		return ticks;
+	}
+
+	/** @return the number of times a tick finished after the next tick's deadline **/
+	public long getOverrunCount() {
+		return overruns;
+	}
+
+	/** @return the number of ticks that were skipped because of overruns **/
+	public long getSkippedCount() {
+		return skipped;
+	}
+}
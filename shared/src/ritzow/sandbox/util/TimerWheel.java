@@ -0,0 +1,156 @@
+package ritzow.sandbox.util;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks after a delay on one thread, for large numbers of short tasks that are often cancelled before they run,
+ * such as message resends. Time is divided into ticks, and each timeout is stored in the bucket of the tick it
+ * expires in, in a ring of buckets that the thread visits one per tick. A timeout further away than one turn of the
+ * ring waits for the number of turns it is away. Scheduling and cancelling take constant time, and a timeout runs
+ * during the first tick that ends after its delay has passed, so it can run up to one tick late.
+ * <p>
+ * Any thread can schedule and cancel timeouts. Tasks run on the wheel's thread, so they should not block.
+ * @author Solomon Ritzow
+ */
+public final class TimerWheel {
+
+	/** A task scheduled to run after a delay **/
+	public static final class Timeout {
+		private final Runnable task;
+		private final long deadline;
+		private volatile boolean cancelled;
+
+		/** the number of turns of the wheel before the timeout expires, and the next timeout in its bucket **/
+		private long rounds;
+		private Timeout next;
+
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/** Prevents the task from running, if it has not already run **/
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	private final long tickNanoseconds, startTime;
+	private final Timeout[] buckets;
+	private final int mask;
+
+	/** timeouts scheduled since the last tick, which the wheel's thread moves into buckets **/
+	private final Queue<Timeout> scheduled;
+
+	private Thread thread;
+	private volatile boolean exit;
+
+	/** the number of ticks that have passed, only used by the wheel's thread **/
+	private long tick;
+
+	/**
+	 * @param tickNanoseconds the length of each tick, which is the precision of the timeouts
+	 * @param wheelSize the number of buckets, rounded up to a power of two, one turn of the wheel is this many ticks
+	 */
+	public TimerWheel(long tickNanoseconds, int wheelSize) {
+		if(tickNanoseconds <= 0 || wheelSize <= 0 || wheelSize > 1 << 30)
+			throw new IllegalArgumentException("tickNanoseconds and wheelSize must be positive and wheelSize at most 2^30");
+		int size = Integer.highestOneBit(wheelSize) == wheelSize ? wheelSize : Integer.highestOneBit(wheelSize) << 1;
+		this.tickNanoseconds = tickNanoseconds;
+		this.buckets = new Timeout[size];
+		this.mask = size - 1;
+		this.scheduled = new ConcurrentLinkedQueue<>();
+		this.startTime = System.nanoTime();
+	}
+
+	public void start(String threadName) {
+		if(thread != null)
+			throw new IllegalStateException("timer wheel already started");
+		(thread = new Thread(this::run, threadName)).setDaemon(true);
+		thread.start();
+	}
+
+	/** Stops the wheel's thread, timeouts that have not expired never run **/
+	public void stop() {
+		exit = true;
+		if(thread != null)
+			LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Schedules a task to run on the wheel's thread.
+	 * @param task the task to run
+	 * @param delayNanoseconds the minimum time until the task runs
+	 * @return the timeout, which can be used to cancel the task
+	 */
+	public Timeout schedule(Runnable task, long delayNanoseconds) {
+		Timeout timeout = new Timeout(Objects.requireNonNull(task), System.nanoTime() + Math.max(0, delayNanoseconds));
+		scheduled.add(timeout);
+		return timeout;
+	}
+
+	private void run() {
+		while(!exit) {
+			//wait until the end of the current tick
+			long tickEnd = startTime + (tick + 1) * tickNanoseconds;
+			long remaining;
+			while(!exit && (remaining = tickEnd - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(this, remaining);
+			}
+			addScheduled();
+			expire((int)tick & mask);
+			tick++;
+		}
+	}
+
+	/** Moves the timeouts scheduled since the last tick into the buckets of the ticks they expire in **/
+	private void addScheduled() {
+		Timeout timeout;
+		while((timeout = scheduled.poll()) != null) {
+			if(!timeout.cancelled) {
+				//the first tick that ends at or after the deadline, or the current tick if the deadline has passed
+				long expires = Math.max(tick, (timeout.deadline - startTime - 1) / tickNanoseconds);
+				timeout.rounds = (expires - tick) / buckets.length;
+				int bucket = (int)expires & mask;
+				timeout.next = buckets[bucket];
+				buckets[bucket] = timeout;
+			}
+		}
+	}
+
+	/** Runs the timeouts in the bucket that expire this turn of the wheel, and removes them and cancelled timeouts **/
+	private void expire(int bucket) {
+		Timeout previous = null, timeout = buckets[bucket];
+		while(timeout != null) {
+			Timeout next = timeout.next;
+			if(timeout.cancelled || timeout.rounds == 0) {
+				if(previous == null)
+					buckets[bucket] = next;
+				else
+					previous.next = next;
+				timeout.next = null;
+				if(!timeout.cancelled)
+					runTask(timeout.task);
+			} else {
+				timeout.rounds--;
+				previous = timeout;
+			}
+			timeout = next;
+		}
+	}
+
+	private static void runTask(Runnable task) {
+		try {
+			task.run();
+		} catch(RuntimeException e) {
+			e.printStackTrace(); //keep running the other timeouts
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package ritzow.sandbox.util;
+
+import java.util.Arrays;
+
+/**
+ * Records durations in nanoseconds into a fixed set of buckets, and reports percentiles of the durations
+ * recorded during a rolling window of time. Each power of two is divided into eight buckets, so a reported
+ * percentile is at most 12.5% larger than the recorded duration, and recording allocates nothing. The
+ * window is divided into sub-windows, and the oldest sub-window is cleared and reused when the newest one
+ * is full, so durations stop being reported between one sub-window and one window after they are recorded.
+ * <p>
+ * Only one thread may record durations. Other threads may read the statistics at any time, but statistics
+ * read while durations are being recorded are approximate.
+ * @author Solomon Ritzow
+ */
+public final class TimingHistogram {
+	private static final int SUB_BUCKET_BITS = 3, SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** enough buckets for any positive long **/
+	private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+	private final long windowNanoseconds, subWindowNanoseconds;
+
+	/** the bucket counts of each sub-window **/
+	private final int[][] counts;
+
+	/** the time each sub-window started and the longest duration recorded in it **/
+	private final long[] starts, maximums;
+	private int current;
+
+	/**
+	 * @param windowNanoseconds the length of time to report durations for
+	 * @param subWindows the number of parts to divide the window into, more parts make the window end more precisely
+	 */
+	public TimingHistogram(long windowNanoseconds, int subWindows) {
+		if(windowNanoseconds <= 0 || subWindows <= 0)
+			throw new IllegalArgumentException("windowNanoseconds and subWindows must be positive");
+		this.windowNanoseconds = windowNanoseconds;
+		this.subWindowNanoseconds = windowNanoseconds / subWindows;
+		this.counts = new int[subWindows][BUCKETS];
+		this.starts = new long[subWindows];
+		this.maximums = new long[subWindows];
+		long now = System.nanoTime();
+		Arrays.fill(starts, now - windowNanoseconds); //every sub-window starts out expired
+		starts[0] = now;
+	}
+
+	/**
+	 * Records a duration that has just finished.
+	 * @param start the value of {@link System#nanoTime()} when the duration started
+	 * @param end the value of {@link System#nanoTime()} when the duration ended
+	 */
+	public void record(long start, long end) {
+		if(end - starts[current] >= subWindowNanoseconds) {
+			current = (current + 1) % counts.length;
+			Arrays.fill(counts[current], 0);
+			maximums[current] = 0;
+			starts[current] = end;
+		}
+		long duration = Math.max(0, end - start);
+		counts[current][bucket(duration)]++;
+		if(duration > maximums[current])
+			maximums[current] = duration;
+	}
+
+	/** @return the number of durations recorded during the window **/
+	public long getCount() {
+		long count = 0;
+		long now = System.nanoTime();
+		for(int window = 0; window < counts.length; window++) {
+			if(isRecent(window, now)) {
+				for(int bucket : counts[window]) {
+					count += bucket;
+				}
+			}
+		}
+		return count;
+	}
+
+	/** @return the longest duration recorded during the window in nanoseconds, or zero if none were recorded **/
+	public long getMaximum() {
+		long max = 0;
+		long now = System.nanoTime();
+		for(int window = 0; window < counts.length; window++) {
+			if(isRecent(window, now))
+				max = Math.max(max, maximums[window]);
+		}
+		return max;
+	}
+
+	/**
+	 * @param fraction the fraction of durations, from 0 to 1
+	 * @return the duration in nanoseconds that the fraction of the durations recorded during the window were
+	 * at most, rounded up to the end of its bucket, or zero if none were recorded
+	 */
+	public long getPercentile(double fraction) {
+		long[] totals = new long[BUCKETS];
+		long count = 0, max = 0;
+		long now = System.nanoTime();
+		for(int window = 0; window < counts.length; window++) {
+			if(isRecent(window, now)) {
+				int[] buckets = counts[window];
+				for(int bucket = 0; bucket < BUCKETS; bucket++) {
+					totals[bucket] += buckets[bucket];
+					count += buckets[bucket];
+				}
+				max = Math.max(max, maximums[window]);
+			}
+		}
+		long rank = Math.max(1, (long)Math.ceil(fraction * count));
+		for(int bucket = 0; bucket < BUCKETS && count > 0; bucket++) {
+			rank -= totals[bucket];
+			if(rank <= 0)
+				return Math.min(max, bucketEnd(bucket));
+		}
+		return max;
+	}
+
+	private boolean isRecent(int window, long now) {
+		return now - starts[window] < windowNanoseconds;
+	}
+
+	/** @return the bucket of the duration, durations below 16 nanoseconds have their own buckets **/
+	private static int bucket(long duration) {
+		if(duration < SUB_BUCKETS * 2)
+			return (int)duration;
+		int shift = 63 - Long.numberOfLeadingZeros(duration) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int)((duration >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/** @return the longest duration in the bucket **/
+	private static long bucketEnd(int bucket) {
+		if(bucket < SUB_BUCKETS * 2)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		return ((long)(SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+	}
+}
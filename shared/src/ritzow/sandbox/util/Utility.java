@@ -1,7 +1,12 @@
 package ritzow.sandbox.util;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BooleanSupplier;
-import ritzow.sandbox.world.World;
 
 /**
  * Contains a number of static utility methods relating to various systems (matrix/random math, time, synchronization, hitboxes)
@@ -13,6 +18,12 @@ public final class Utility {
 		throw new UnsupportedOperationException("Utility class cannot be instantiated");
 	}
 	
+	/** 
+	 * the threads waiting to be notified by each lock object, which are parked rather than waiting on the object's monitor,
+	 * keyed by identity like a monitor so that objects that are equal but distinct do not notify each other
+	 **/
+	private static final Map<Object, Set<Thread>> waiting = Collections.synchronizedMap(new IdentityHashMap<>());
+	
 	/**
 	 * Sleeps for the provided number of milliseconds
 	 * @param milliseconds the number of milliseconds to sleep for
@@ -31,80 +42,101 @@ public final class Utility {
 	}
 	
 	/**
-	 * Updates the world
-	 * @param world the world to update
-	 * @param previousTime the previous update start time
-	 * @param maxTimestep the maximum amount of game time to update the world at once
-	 * @param timeScale the time conversion (from nanoseconds to game time)
-	 * @return the start time for the world update (should replace the previous time)
+	 * Wakes up the threads waiting on {@code o} in {@link #waitOnCondition(Object, BooleanSupplier)} or 
+	 * {@link #waitUnconditionally(Object)}. Waiting threads are parked instead of waiting on the object's monitor, 
+	 * so waiting neither holds nor requires a lock and does not pin virtual threads to their carrier threads.
+	 * @param o the object to notify threads waiting on
 	 */
-	public static long updateWorld(World world, long previousTime, float maxTimestep, float timeScale) {
-		if(previousTime == 0)
-			throw new IllegalArgumentException("previousTime is 0");
-		long current = System.nanoTime(); //get the current time
-		float totalUpdateTime = (current - previousTime) / timeScale;
-		
-		//update the world with a timestep of at most maxTimestep until the world is up to date.
-		for(float time = totalUpdateTime; totalUpdateTime > 0; totalUpdateTime -= time) {
-			time = Math.min(totalUpdateTime, maxTimestep);
-			world.update(time);
-			totalUpdateTime -= time;
-		}
-		return current;
-	}
-	
 	public static void notify(Object o) {
-		synchronized(o) {
-			o.notifyAll();
+		Set<Thread> threads = waiting.get(o);
+		if(threads != null) {
+			for(Thread thread : threads) {
+				LockSupport.unpark(thread);
+			}
 		}
 	}
 	
+	/**
+	 * Waits until {@code o} is notified, or the thread wakes up spuriously.
+	 * @param o the object to wait to be notified by
+	 */
 	public static void waitUnconditionally(Object o) {
+		addWaiting(o);
 		try {
-			synchronized(o) {
-				o.wait();
-			}
-		} catch (InterruptedException e) {
-			throwInterrupted(e);
+			LockSupport.park(o);
+			checkInterrupted();
+		} finally {
+			removeWaiting(o);
 		}
 	}
 	
 	/**
 	 * Waits on {@code lock} and returns once {@code condition} returns {@code true}.
 	 * @param lock the object to wait to be notified by.
-	 * @param object the condition to check.
+	 * @param condition the condition to check each time the lock is notified.
 	 */
 	public static void waitOnCondition(Object lock, BooleanSupplier condition) {
 		if(!condition.getAsBoolean()) {
-			synchronized(lock) {
-				try {
-					lock.wait();
-				} catch(InterruptedException e) {
-					throwInterrupted(e);
+			addWaiting(lock);
+			try {
+				//the condition is checked after the thread is added, so a notification can't be missed
+				while(!condition.getAsBoolean()) {
+					LockSupport.park(lock);
+					checkInterrupted();
 				}
-				if(!condition.getAsBoolean())
-					throw new IllegalStateException("condition not met");
+			} finally {
+				removeWaiting(lock);
 			}
 		}
 	}
 	
+	/**
+	 * Waits on {@code lock} and returns once {@code condition} returns {@code true} or the timeout has passed.
+	 * @param lock the object to wait to be notified by.
+	 * @param timeoutMillis the maximum number of milliseconds to wait
+	 * @param condition the condition to check each time the lock is notified.
+	 */
 	public static void waitOnCondition(Object lock, long timeoutMillis, BooleanSupplier condition) {
 		if(timeoutMillis == 0)
 			throw new IllegalArgumentException("timeout of 0 not allowed, use other overload");
 		if(!condition.getAsBoolean()) {
-			long start = System.currentTimeMillis();
-			synchronized(lock) {
-				try {
-					lock.wait(timeoutMillis);
-				} catch(InterruptedException e) {
-					throwInterrupted(e);
+			long deadline = System.nanoTime() + millisToNanos(timeoutMillis);
+			addWaiting(lock);
+			try {
+				long remaining;
+				while(!condition.getAsBoolean() && (remaining = deadline - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(lock, remaining);
+					checkInterrupted();
 				}
+			} finally {
+				removeWaiting(lock);
 			}
-			if((System.currentTimeMillis() - start) < timeoutMillis && !condition.getAsBoolean())
-				throw new IllegalStateException("condition not met");
 		}
 	}
 	
+	private static void addWaiting(Object lock) {
+		Thread current = Thread.currentThread();
+		waiting.compute(lock, (key, threads) -> {
+			if(threads == null)
+				threads = ConcurrentHashMap.newKeySet();
+			threads.add(current);
+			return threads;
+		});
+	}
+	
+	private static void removeWaiting(Object lock) {
+		Thread current = Thread.currentThread();
+		waiting.computeIfPresent(lock, (key, set) -> {
+			set.remove(current);
+			return set.isEmpty() ? null : set; //remove the set in the map operation so that no thread adds itself to a removed set
+		});
+	}
+	
+	private static void checkInterrupted() {
+		if(Thread.interrupted())
+			throwInterrupted(new InterruptedException());
+	}
+	
 	//TODO implement rotateAround
 	public static float rotateAround(float radians, float radius, float centerX, float centerY) {
 		throw new UnsupportedOperationException("not implemented");
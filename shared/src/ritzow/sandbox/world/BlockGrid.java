@@ -1,68 +1,212 @@
 package ritzow.sandbox.world;
 
-import ritzow.sandbox.data.ByteUtil;
+import java.util.concurrent.locks.StampedLock;
+import ritzow.sandbox.data.SerializationException;
 import ritzow.sandbox.data.Serializer;
 import ritzow.sandbox.data.Transportable;
 import ritzow.sandbox.data.TransportableDataReader;
+import ritzow.sandbox.data.UncheckedByteArrayDataWriter;
 import ritzow.sandbox.world.block.Block;
+import ritzow.sandbox.world.block.BlockRegistry;
 
+/**
+ * Stores a grid of blocks, either a rectangle with its bottom left corner at (0, 0) or an unbounded
+ * grid that extends in every direction, including negative coordinates. The grid is divided into
+ * fixed size chunks that are only allocated once a block is placed in them and are released once
+ * they no longer contain any blocks, so regions of the grid containing only air use no memory.
+ * Every block stored in a grid must be registered with {@link BlockRegistry}.
+ * <p>
+ * Reads do not lock: they read optimistically and are only retried under a read lock if a
+ * write happened at the same time, so reads from the game, render, and input threads do not 
+ * contend with each other. Writes are serialized by an exclusive lock.
+ * @author Solomon Ritzow
+ */
 public final class BlockGrid implements Transportable {
-	private final Block[][] blocks;
-	//private final Grid<Grid<Block>> chunks;
+	
+	/** An action performed on the coordinates of a chunk **/
+	@FunctionalInterface
+	public static interface ChunkAction {
+		void accept(int chunkX, int chunkY);
+	}
+	
+	/** Computes the new block for each cell of a region edited by {@link BlockGrid#apply(int, int, int, int, BlockEdit)} **/
+	@FunctionalInterface
+	public static interface BlockEdit {
+		/**
+		 * @param x the horizontal block coordinate
+		 * @param y the vertical block coordinate
+		 * @param block the current block, or null if there is no block
+		 * @return the new registered block, or null to remove the block
+		 */
+		Block edit(int x, int y, Block block);
+	}
+	
+	/** How the blocks in each chunk of a BlockGrid are stored **/
+	public static enum StorageMode {
+		/** Each cell stores a reference to its block **/
+		REFERENCE,
+		
+		/** 
+		 * Each chunk stores a palette of its distinct blocks and each cell stores a 1 to 16 bit index into the palette.
+		 * Equal blocks share a palette entry, so {@code get} may return an equal block instead of the one that was set.
+		 */
+		PALETTE;
+	}
+	
+	/** width and height of each chunk of a grid, in blocks **/
+	public static final int CHUNK_SIZE = Chunk.SIZE;
+	
+	/** Flags returned by {@link #getCollisionFlags(int, int)} **/
+	public static final int
+		SOLID_ABOVE = 1,
+		SOLID_BELOW = 2,
+		SOLID_LEFT = 4,
+		SOLID_RIGHT = 8,
+		SOLID_NEIGHBORS = SOLID_ABOVE | SOLID_BELOW | SOLID_LEFT | SOLID_RIGHT,
+		SOLID = 16;
+	
+	/** Returned by {@link #getSurfaceHeight(int)} for columns that contain no solid blocks **/
+	public static final int NO_SURFACE = Integer.MIN_VALUE;
+	
+	/** width and height of a bounded grid, both 0 if the grid is unbounded **/
+	private final int width, height;
+	private final StorageMode mode;
+	
+	/** chunks keyed by their packed chunk coordinates, chunks that contain no blocks are not stored **/
+	private final ChunkMap chunks;
+	
+	/** height of the topmost solid block in each column **/
+	private final ColumnHeights heights;
+	
+	/** version at which each chunk was last modified **/
+	private final ChunkVersions versions;
+	
+	/** incremented by every modification, only written with the write lock held **/
+	private volatile long version;
+	
+	/** chunk coordinates of a rectangle containing every allocated chunk of an unbounded grid, only reset once the grid is empty **/
+	private volatile int minChunkX, minChunkY, maxChunkX, maxChunkY;
+	
+	/** exclusive lock for writes, validated by reads **/
+	private final StampedLock lock;
+	
+	/** Creates an unbounded grid that stores its chunks as palettes **/
+	public BlockGrid() {
+		this(StorageMode.PALETTE);
+	}
+	
+	/** Creates an unbounded grid **/
+	public BlockGrid(StorageMode mode) {
+		this(0, 0, mode, false);
+	}
 	
 	public BlockGrid(int width, int height) {
-		blocks = new Block[height][width];
+		this(width, height, StorageMode.PALETTE);
+	}
+	
+	public BlockGrid(int width, int height, StorageMode mode) {
+		this(width, height, mode, true);
+	}
+	
+	private BlockGrid(int width, int height, StorageMode mode, boolean bounded) {
+		if(bounded ? width <= 0 || height <= 0 : width != 0 || height != 0)
+			throw new IllegalArgumentException("width and height must be greater than 0");
+		this.width = width;
+		this.height = height;
+		this.mode = mode;
+		this.chunks = new ChunkMap();
+		this.versions = new ChunkVersions();
+		this.heights = new ColumnHeights();
+		this.lock = new StampedLock();
 	}
 	
 	public BlockGrid(TransportableDataReader data) {
-		int width = data.readInteger();
-		int height = data.readInteger();
-		blocks = new Block[height][width];
-		for(int row = 0; row < height; row++) {
-			for(int column = 0; column < width; column++) {
-				blocks[row][column] = data.readObject();
+		this(data.readInteger(), data.readInteger(), data.readByte());
+		int chunkCount = data.readInteger();
+		for(int i = 0; i < chunkCount; i++) {
+			long key = data.readLong();
+			int chunkX = Chunk.keyX(key), chunkY = Chunk.keyY(key);
+			if(!isValid(chunkX << Chunk.SHIFT, chunkY << Chunk.SHIFT))
+				throw new SerializationException("chunk (" + chunkX + ", " + chunkY + ") is outside of the grid");
+			chunks.put(Chunk.read(key, data, mode));
+			include(chunkX, chunkY);
+		}
+		for(Chunk chunk : chunks.toArray()) {
+			computeCollision(Chunk.keyX(chunk.key), Chunk.keyY(chunk.key), 0, 0, Chunk.MASK, Chunk.MASK);
+		}
+		for(Chunk chunk : chunks.toArray()) {
+			int baseX = Chunk.keyX(chunk.key) << Chunk.SHIFT, baseY = Chunk.keyY(chunk.key) << Chunk.SHIFT;
+			for(int x = 0; x < Chunk.SIZE; x++) {
+				for(int y = Chunk.MASK; y >= 0; y--) {
+					if(chunk.collision[Chunk.index(x, y)] != 0) {
+						if(baseY + y > heights.get(baseX + x))
+							heights.set(baseX + x, baseY + y);
+						break;
+					}
+				}
 			}
 		}
-		data.readInteger(); //TODO figure out why this extra read is necessary?
-		data.readInteger(); //TODO figure out why this extra read is necessary?
+	}
+	
+	private BlockGrid(int width, int height, byte mode) {
+		this(width, height, StorageMode.values()[mode], width != 0 || height != 0);
+	}
+	
+	/** @return a grid with the same bounds and storage mode as this grid, but no blocks **/
+	public BlockGrid emptyCopy() {
+		return new BlockGrid(width, height, mode, width != 0);
 	}
 	
 	@Override
 	public byte[] getBytes(Serializer ser) {
-		int width = getWidth();
-		int height = getHeight();
-		
-		byte[][] blockData = new byte[width * height][];
+		Chunk[] stored;
+		byte[][] chunkData;
+		int chunkBytes = 0;
 		
-		for(int row = 0; row < height; row++) {
-			for(int column = 0; column < width; column++) {
-				blockData[row * width + column] = ser.serialize(blocks[row][column]);
+		long stamp = lock.readLock();
+		try {
+			stored = chunks.toArray();
+			chunkData = new byte[stored.length][];
+			for(int i = 0; i < stored.length; i++) {
+				chunkData[i] = stored[i].getBytes(ser);
+				chunkBytes += chunkData[i].length;
 			}
+		} finally {
+			lock.unlockRead(stamp);
 		}
 		
-		byte[] data = ByteUtil.concatenate(8, blockData);
-		ByteUtil.putInteger(data, 0, width);
-		ByteUtil.putInteger(data, 4, height);
+		//width, height, storage mode, number of chunks, then the coordinates and data of each chunk
+		byte[] data = new byte[4 + 4 + 1 + 4 + stored.length * 8 + chunkBytes];
+		UncheckedByteArrayDataWriter writer = new UncheckedByteArrayDataWriter(data, 0);
+		writer.writeInteger(width);
+		writer.writeInteger(height);
+		writer.writeByte((byte)mode.ordinal());
+		writer.writeInteger(stored.length);
+		for(int i = 0; i < stored.length; i++) {
+			writer.writeLong(stored[i].key);
+			writer.writeBytes(chunkData[i]);
+		}
 		return data;
 	}
 	
 	@Override
 	public String toString() {
+		int left = getLeft(), right = getRight(), bottom = getBottom(), top = getTop();
 		StringBuilder builder = new StringBuilder();
 		
 		builder.append('┌');
-		for(int i = 1; i < blocks[0].length - 1; i++) {
+		for(int i = left + 1; i < right; i++) {
 			builder.append('─');
 		}
 		builder.append('┐');
 		builder.append('\n');
 		
-		for(int i = 0; i < blocks.length; i++) {
+		for(int i = top; i >= bottom; i--) {
 			builder.append('│');
-			for(int j = 1; j < blocks[i].length - 1; j++) {
-				Block block = blocks[i][j];
+			for(int j = left + 1; j < right; j++) {
+				Block block = get(j, i);
 				if(block != null) {
-					builder.append(Character.toUpperCase(blocks[i][j].getName().charAt(0)));
+					builder.append(Character.toUpperCase(block.getName().charAt(0)));
 				} else {
 					builder.append(" ");
 				}
@@ -72,7 +216,7 @@ public final class BlockGrid implements Transportable {
 		}
 		
 		builder.append('└');
-		for(int i = 1; i < blocks[0].length - 1; i++) {
+		for(int i = left + 1; i < right; i++) {
 			builder.append('─');
 		}
 		builder.append('┘');
@@ -80,26 +224,366 @@ public final class BlockGrid implements Transportable {
 		return builder.toString();
 	}
 	
+	/** @return whether the block coordinates are inside the grid, always true for an unbounded grid **/
 	public boolean isValid(int x, int y) {
-		return y >= 0 && x >= 0 && y < blocks.length && x < blocks[y].length;
+		return width == 0 || (y >= 0 && x >= 0 && y < height && x < width);
+	}
+	
+	private void checkValid(int x, int y) {
+		if(!isValid(x, y))
+			throw new IndexOutOfBoundsException("block coordinates (" + x + ", " + y + ") are outside of the grid");
+	}
+	
+	private static long chunkKey(int x, int y) {
+		return Chunk.key(x >> Chunk.SHIFT, y >> Chunk.SHIFT);
+	}
+	
+	/**
+	 * @param blockCoordinate a horizontal or vertical block coordinate
+	 * @return the coordinate of the chunk containing the block
+	 */
+	public static int toChunkCoordinate(int blockCoordinate) {
+		return blockCoordinate >> Chunk.SHIFT;
+	}
+	
+	/** @return a palette copy of a chunk, or null if the chunk contains no blocks **/
+	Chunk copyChunk(int chunkX, int chunkY) {
+		long stamp = lock.readLock();
+		try {
+			Chunk chunk = chunks.get(Chunk.key(chunkX, chunkY));
+			return chunk == null ? null : new PaletteChunk(chunk);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Replaces every block in a chunk.
+	 * @param chunkX the horizontal chunk coordinate
+	 * @param chunkY the vertical chunk coordinate
+	 * @param chunk a chunk with the same coordinates, or null to remove every block in the chunk
+	 */
+	void setChunk(int chunkX, int chunkY, Chunk chunk) {
+		if(!isValid(chunkX << Chunk.SHIFT, chunkY << Chunk.SHIFT))
+			throw new IndexOutOfBoundsException("chunk (" + chunkX + ", " + chunkY + ") is outside of the grid");
+		if(chunk != null && mode == StorageMode.REFERENCE)
+			chunk = new ReferenceChunk(chunk);
+		long stamp = lock.writeLock();
+		try {
+			if(chunk == null || chunk.isEmpty()) {
+				chunks.remove(Chunk.key(chunkX, chunkY));
+			} else {
+				chunks.put(chunk);
+				include(chunkX, chunkY);
+			}
+			versions.put(Chunk.key(chunkX, chunkY), ++version);
+			
+			//update the chunk and the cells bordering it in neighboring chunks
+			computeCollision(chunkX, chunkY, 0, 0, Chunk.MASK, Chunk.MASK);
+			computeCollision(chunkX, chunkY + 1, 0, 0, Chunk.MASK, 0);
+			computeCollision(chunkX, chunkY - 1, 0, Chunk.MASK, Chunk.MASK, Chunk.MASK);
+			computeCollision(chunkX - 1, chunkY, Chunk.MASK, 0, Chunk.MASK, Chunk.MASK);
+			computeCollision(chunkX + 1, chunkY, 0, 0, 0, Chunk.MASK);
+			
+			//update the columns whose topmost solid block may have been in or below the chunk
+			int top = (chunkY << Chunk.SHIFT) + Chunk.MASK;
+			for(int x = chunkX << Chunk.SHIFT; x <= (chunkX << Chunk.SHIFT) + Chunk.MASK; x++) {
+				if(heights.get(x) <= top)
+					heights.set(x, findSurface(x, top));
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
 	}
 	
 	public Block get(int x, int y) {
-		synchronized(blocks) {
-			return blocks[blocks.length - 1 - y][x];
+		checkValid(x, y);
+		long key = chunkKey(x, y);
+		int cell = Chunk.index(x & Chunk.MASK, y & Chunk.MASK);
+		long stamp = lock.tryOptimisticRead();
+		Block block = readBlock(key, cell);
+		if(!lock.validate(stamp)) { //a write occurred during the read
+			stamp = lock.readLock();
+			try {
+				block = readBlock(key, cell);
+			} finally {
+				lock.unlockRead(stamp);
+			}
 		}
+		return block;
+	}
+	
+	private Block readBlock(long key, int cell) {
+		Chunk chunk = chunks.get(key);
+		return chunk == null ? null : chunk.get(cell);
 	}
 	
 	public Block get(float worldX, float worldY) {
 		return get(Math.round(worldX), Math.round(worldY));
 	}
 	
+	/**
+	 * @param x the horizontal block coordinate
+	 * @param y the vertical block coordinate
+	 * @return the BlockRegistry type ID of the block at the coordinates, or {@link BlockRegistry#AIR} if there is no block
+	 */
+	public int getType(int x, int y) {
+		checkValid(x, y);
+		long key = chunkKey(x, y);
+		int cell = Chunk.index(x & Chunk.MASK, y & Chunk.MASK);
+		long stamp = lock.tryOptimisticRead();
+		int type = readType(key, cell);
+		if(!lock.validate(stamp)) { //a write occurred during the read
+			stamp = lock.readLock();
+			try {
+				type = readType(key, cell);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return type;
+	}
+	
+	private int readType(long key, int cell) {
+		Chunk chunk = chunks.get(key);
+		return chunk == null ? BlockRegistry.AIR : chunk.getType(cell);
+	}
+	
+	/**
+	 * Returns whether a block is solid and which of its neighbors are solid, read with a single lookup.
+	 * The flags are updated whenever a block is set, so collision checks do not need to look up each neighbor.
+	 * @param x the horizontal block coordinate
+	 * @param y the vertical block coordinate
+	 * @return {@link #SOLID} combined with the {@code SOLID_} direction flags of the solid neighbors
+	 * if the block is solid, or 0 if it is not solid or is outside of the grid
+	 */
+	public int getCollisionFlags(int x, int y) {
+		if(!isValid(x, y))
+			return 0;
+		long key = chunkKey(x, y);
+		int cell = Chunk.index(x & Chunk.MASK, y & Chunk.MASK);
+		long stamp = lock.tryOptimisticRead();
+		int flags = readCollision(key, cell);
+		if(!lock.validate(stamp)) { //a write occurred during the read
+			stamp = lock.readLock();
+			try {
+				flags = readCollision(key, cell);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return flags;
+	}
+	
+	private int readCollision(long key, int cell) {
+		Chunk chunk = chunks.get(key);
+		return chunk == null ? 0 : chunk.collision[cell];
+	}
+	
 	public void set(int x, int y, Block block) {
-		synchronized(blocks) {
-			blocks[blocks.length - 1 - y][x] = block;
+		checkValid(x, y);
+		checkRegistered(block);
+		long stamp = lock.writeLock();
+		try {
+			long key = chunkKey(x, y);
+			Chunk chunk = chunks.get(key);
+			if(chunk == null) {
+				if(block == null)
+					return; //chunk is already empty
+				chunk = mode == StorageMode.PALETTE ? new PaletteChunk(key) : new ReferenceChunk(key);
+				chunks.put(chunk);
+				include(x >> Chunk.SHIFT, y >> Chunk.SHIFT);
+			}
+			int cell = Chunk.index(x & Chunk.MASK, y & Chunk.MASK);
+			if(chunk.getType(cell) == (block == null ? BlockRegistry.AIR : block.getTypeID()))
+				return; //the block is already there
+			boolean wasSolid = chunk.collision[cell] != 0;
+			chunk.set(cell, block);
+			versions.put(key, ++version);
+			chunk.collision[cell] = (byte)collisionFlags(chunk, cell, x, y);
+			if(wasSolid != (chunk.collision[cell] != 0)) {
+				setNeighborFlag(x, y + 1, SOLID_BELOW, !wasSolid);
+				setNeighborFlag(x, y - 1, SOLID_ABOVE, !wasSolid);
+				setNeighborFlag(x - 1, y, SOLID_RIGHT, !wasSolid);
+				setNeighborFlag(x + 1, y, SOLID_LEFT, !wasSolid);
+				
+				//update the topmost solid block in the column
+				if(!wasSolid && y > heights.get(x))
+					heights.set(x, y);
+				else if(wasSolid && y == heights.get(x))
+					heights.set(x, findSurface(x, y - 1));
+			}
+			if(chunk.isEmpty())
+				chunks.remove(key); //release chunks that no longer contain blocks
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Sets every block in a rectangular region.
+	 * @param x the left column of the region
+	 * @param y the bottom row of the region
+	 * @param width the number of columns in the region
+	 * @param height the number of rows in the region
+	 * @param block the registered block to fill the region with, or null to remove every block in the region
+	 */
+	public void fill(int x, int y, int width, int height, Block block) {
+		checkRegistered(block);
+		edit(x, y, width, height, (blockX, blockY, previous) -> block);
+	}
+	
+	/**
+	 * Replaces every block of one type in a rectangular region with another block.
+	 * @param x the left column of the region
+	 * @param y the bottom row of the region
+	 * @param width the number of columns in the region
+	 * @param height the number of rows in the region
+	 * @param target a block of the type to replace, or null to fill the empty cells of the region
+	 * @param replacement the registered block to replace it with, or null to remove the blocks
+	 */
+	public void replace(int x, int y, int width, int height, Block target, Block replacement) {
+		checkRegistered(replacement);
+		int type = target == null ? BlockRegistry.AIR : target.getTypeID();
+		edit(x, y, width, height, (blockX, blockY, block) -> 
+			(block == null ? BlockRegistry.AIR : block.getTypeID()) == type ? replacement : block);
+	}
+	
+	/**
+	 * Copies a rectangular region of another grid, or of this grid, into this grid.
+	 * @param source the grid to copy blocks from
+	 * @param sourceX the left column of the region to copy
+	 * @param sourceY the bottom row of the region to copy
+	 * @param width the number of columns in the region
+	 * @param height the number of rows in the region
+	 * @param x the left column of the region in this grid to copy the blocks to
+	 * @param y the bottom row of the region in this grid to copy the blocks to
+	 */
+	public void paste(BlockGrid source, int sourceX, int sourceY, int width, int height, int x, int y) {
+		checkRegion(x, y, width, height);
+		Block[] blocks = source.copy(sourceX, sourceY, width, height); //copied first so the grids are never locked together
+		edit(x, y, width, height, (blockX, blockY, block) -> blocks[(blockY - y) * width + (blockX - x)]);
+	}
+	
+	/**
+	 * Replaces every block in a rectangular region with the result of a function. The grid is locked while 
+	 * the function is called, so it must not access the grid.
+	 * @param x the left column of the region
+	 * @param y the bottom row of the region
+	 * @param width the number of columns in the region
+	 * @param height the number of rows in the region
+	 * @param edit computes the new block for each cell
+	 * @throws IllegalArgumentException if the function returns an unregistered block, which leaves the 
+	 * cells before it edited and the rest unchanged
+	 */
+	public void apply(int x, int y, int width, int height, BlockEdit edit) {
+		edit(x, y, width, height, (blockX, blockY, block) -> {
+			Block result = edit.edit(blockX, blockY, block);
+			checkRegistered(result);
+			return result;
+		});
+	}
+	
+	/** @return the blocks in a region, row by row from the bottom left **/
+	private Block[] copy(int x, int y, int width, int height) {
+		checkRegion(x, y, width, height);
+		Block[] blocks = new Block[width * height];
+		long stamp = lock.readLock();
+		try {
+			for(int row = 0; row < height; row++) {
+				for(int column = 0; column < width; column++) {
+					blocks[row * width + column] = readBlock(chunkKey(x + column, y + row), 
+							Chunk.index((x + column) & Chunk.MASK, (y + row) & Chunk.MASK));
+				}
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		return blocks;
+	}
+	
+	/**
+	 * Edits a region one chunk at a time while holding the write lock once, records each modified chunk 
+	 * once, then updates the collision flags and column heights of the region.
+	 */
+	private void edit(int x, int y, int width, int height, BlockEdit edit) {
+		checkRegion(x, y, width, height);
+		if(width == 0 || height == 0)
+			return;
+		int maxX = x + width - 1, maxY = y + height - 1;
+		long stamp = lock.writeLock();
+		try {
+			long editVersion = 0;
+			for(int chunkY = y >> Chunk.SHIFT; chunkY <= maxY >> Chunk.SHIFT; chunkY++) {
+				for(int chunkX = x >> Chunk.SHIFT; chunkX <= maxX >> Chunk.SHIFT; chunkX++) {
+					long key = Chunk.key(chunkX, chunkY);
+					Chunk chunk = chunks.get(key);
+					boolean modified = false;
+					int baseX = chunkX << Chunk.SHIFT, baseY = chunkY << Chunk.SHIFT;
+					for(int blockY = Math.max(y, baseY); blockY <= Math.min(maxY, baseY + Chunk.MASK); blockY++) {
+						for(int blockX = Math.max(x, baseX); blockX <= Math.min(maxX, baseX + Chunk.MASK); blockX++) {
+							int cell = Chunk.index(blockX & Chunk.MASK, blockY & Chunk.MASK);
+							Block previous = chunk == null ? null : chunk.get(cell);
+							Block block = edit.edit(blockX, blockY, previous);
+							if((previous == null ? BlockRegistry.AIR : previous.getTypeID()) != (block == null ? BlockRegistry.AIR : block.getTypeID())) {
+								if(chunk == null) {
+									chunk = mode == StorageMode.PALETTE ? new PaletteChunk(key) : new ReferenceChunk(key);
+									chunks.put(chunk);
+									include(chunkX, chunkY);
+								}
+								chunk.set(cell, block);
+								if(!modified) {
+									if(editVersion == 0)
+										editVersion = ++version;
+									versions.put(key, editVersion);
+									modified = true;
+								}
+							}
+						}
+					}
+					if(modified && chunk.isEmpty())
+						chunks.remove(key); //release chunks that no longer contain blocks
+				}
+			}
+		} finally {
+			try {
+				updateRegion(x, y, maxX, maxY);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+	}
+	
+	/** Recomputes the collision flags of a region and the cells bordering it, and the heights of its columns **/
+	private void updateRegion(int minX, int minY, int maxX, int maxY) {
+		for(int chunkY = (minY - 1) >> Chunk.SHIFT; chunkY <= (maxY + 1) >> Chunk.SHIFT; chunkY++) {
+			for(int chunkX = (minX - 1) >> Chunk.SHIFT; chunkX <= (maxX + 1) >> Chunk.SHIFT; chunkX++) {
+				int baseX = chunkX << Chunk.SHIFT, baseY = chunkY << Chunk.SHIFT;
+				computeCollision(chunkX, chunkY, 
+					Math.max(minX - 1, baseX) - baseX, Math.max(minY - 1, baseY) - baseY, 
+					Math.min(maxX + 1, baseX + Chunk.MASK) - baseX, Math.min(maxY + 1, baseY + Chunk.MASK) - baseY);
+			}
+		}
+		for(int x = minX; x <= maxX; x++) {
+			if(heights.get(x) <= maxY)
+				heights.set(x, findSurface(x, maxY));
+		}
+	}
+	
+	private void checkRegion(int x, int y, int width, int height) {
+		if(width < 0 || height < 0)
+			throw new IllegalArgumentException("width and height must not be negative");
+		if(width > 0 && height > 0) {
+			checkValid(x, y);
+			checkValid(x + width - 1, y + height - 1);
 		}
 	}
 	
+	private static void checkRegistered(Block block) {
+		if(block != null && block.getTypeID() == BlockRegistry.AIR)
+			throw new IllegalArgumentException("block type " + block.getClass().getName() + " is not registered");
+	}
+	
 	public boolean destroy(World world, int x, int y) {
 		if(isBlock(x, y)) {
 			Block block = get(x, y);
@@ -134,11 +618,202 @@ public final class BlockGrid implements Transportable {
 		return isBlock(Math.round(worldX), Math.round(worldY));
 	}
 	
+	/**
+	 * Returns the height of the topmost solid block in a column without searching the column.
+	 * @param x the horizontal block coordinate of the column
+	 * @return the vertical block coordinate of the topmost solid block, or {@link #NO_SURFACE} if the column
+	 * contains no solid blocks or is outside of the grid
+	 */
+	public int getSurfaceHeight(int x) {
+		if(!isValid(x, 0))
+			return NO_SURFACE;
+		long stamp = lock.tryOptimisticRead();
+		int height = heights.get(x);
+		if(!lock.validate(stamp)) { //a write occurred during the read
+			stamp = lock.readLock();
+			try {
+				height = heights.get(x);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return height;
+	}
+	
+	/** @return the height of the topmost solid block at or below {@code fromY} in a column, only called with the write lock held **/
+	private int findSurface(int x, int fromY) {
+		for(int chunkY = fromY >> Chunk.SHIFT; chunkY >= getBottom() >> Chunk.SHIFT; chunkY--) {
+			Chunk chunk = chunks.get(Chunk.key(x >> Chunk.SHIFT, chunkY));
+			if(chunk != null) {
+				for(int y = chunkY == fromY >> Chunk.SHIFT ? fromY & Chunk.MASK : Chunk.MASK; y >= 0; y--) {
+					if(chunk.collision[Chunk.index(x & Chunk.MASK, y)] != 0)
+						return (chunkY << Chunk.SHIFT) + y;
+				}
+			}
+		}
+		return NO_SURFACE;
+	}
+	
+	/** @return the current version of the grid, which increases every time a block or chunk is changed **/
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * @param chunkX the horizontal chunk coordinate
+	 * @param chunkY the vertical chunk coordinate
+	 * @return the grid version at which the chunk was last changed, or 0 if it has never been changed
+	 */
+	public long getChunkVersion(int chunkX, int chunkY) {
+		long stamp = lock.readLock();
+		try {
+			return versions.get(Chunk.key(chunkX, chunkY));
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Finds the chunks that have changed since a version of the grid, including chunks whose blocks were all removed.
+	 * Callers keep the returned version and pass it as {@code since} the next time to only receive new changes.
+	 * @param since a version previously returned by this method or {@link #getVersion()}, or 0 for every chunk ever changed
+	 * @param action called with the coordinates of each changed chunk while the grid is locked, must not modify the grid
+	 * @return the version of the grid that includes every reported change
+	 */
+	public long getChangedChunks(long since, ChunkAction action) {
+		if(since == version)
+			return since; //nothing has changed
+		long stamp = lock.readLock();
+		try {
+			versions.forEachSince(since, action);
+			return version;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/** @return the collision flags of a cell, computed from the blocks in the grid, only called with the write lock held or during construction **/
+	private int collisionFlags(Chunk chunk, int cell, int x, int y) {
+		if(!BlockRegistry.isSolid(chunk.getType(cell)))
+			return 0;
+		//neighbors in the same chunk are read directly instead of looking up their chunk
+		int localX = x & Chunk.MASK, localY = y & Chunk.MASK;
+		return SOLID
+			| ((localY < Chunk.MASK ? isSolidCell(chunk, cell + Chunk.SIZE) : isSolidBlock(x, y + 1)) ? SOLID_ABOVE : 0)
+			| ((localY > 0 ? isSolidCell(chunk, cell - Chunk.SIZE) : isSolidBlock(x, y - 1)) ? SOLID_BELOW : 0)
+			| ((localX > 0 ? isSolidCell(chunk, cell - 1) : isSolidBlock(x - 1, y)) ? SOLID_LEFT : 0)
+			| ((localX < Chunk.MASK ? isSolidCell(chunk, cell + 1) : isSolidBlock(x + 1, y)) ? SOLID_RIGHT : 0);
+	}
+	
+	/** @return the collision flags of a cell, given the chunks surrounding its chunk, which may be null **/
+	private static int collisionFlags(Chunk chunk, int cell, Chunk above, Chunk below, Chunk left, Chunk right) {
+		if(!isSolidCell(chunk, cell))
+			return 0;
+		//cells on the edge of the chunk have neighbors in the same row or column on the opposite edge of the next chunk
+		int localX = cell & Chunk.MASK, localY = cell >> Chunk.SHIFT;
+		return SOLID
+			| ((localY < Chunk.MASK ? isSolidCell(chunk, cell + Chunk.SIZE) : isSolidCell(above, localX)) ? SOLID_ABOVE : 0)
+			| ((localY > 0 ? isSolidCell(chunk, cell - Chunk.SIZE) : isSolidCell(below, cell + Chunk.CELLS - Chunk.SIZE)) ? SOLID_BELOW : 0)
+			| ((localX > 0 ? isSolidCell(chunk, cell - 1) : isSolidCell(left, cell + Chunk.MASK)) ? SOLID_LEFT : 0)
+			| ((localX < Chunk.MASK ? isSolidCell(chunk, cell + 1) : isSolidCell(right, cell - Chunk.MASK)) ? SOLID_RIGHT : 0);
+	}
+	
+	private static boolean isSolidCell(Chunk chunk, int cell) {
+		return chunk != null && BlockRegistry.isSolid(chunk.getType(cell));
+	}
+	
+	private boolean isSolidBlock(int x, int y) {
+		Chunk chunk = chunks.get(chunkKey(x, y));
+		return chunk != null && BlockRegistry.isSolid(chunk.getType(Chunk.index(x & Chunk.MASK, y & Chunk.MASK)));
+	}
+	
+	/** Sets or clears a neighbor flag of a solid block after one of its neighbors changed solidity **/
+	private void setNeighborFlag(int x, int y, int flag, boolean solid) {
+		Chunk chunk = chunks.get(chunkKey(x, y));
+		if(chunk != null) {
+			int cell = Chunk.index(x & Chunk.MASK, y & Chunk.MASK);
+			if(chunk.collision[cell] != 0) //only solid blocks store neighbor flags
+				chunk.collision[cell] = (byte)(solid ? chunk.collision[cell] | flag : chunk.collision[cell] & ~flag);
+		}
+	}
+	
+	/** Recomputes the collision flags of a rectangle of cells in a chunk, if the chunk exists **/
+	private void computeCollision(int chunkX, int chunkY, int minX, int minY, int maxX, int maxY) {
+		Chunk chunk = chunks.get(Chunk.key(chunkX, chunkY));
+		if(chunk != null) {
+			Chunk above = chunks.get(Chunk.key(chunkX, chunkY + 1)), below = chunks.get(Chunk.key(chunkX, chunkY - 1));
+			Chunk left = chunks.get(Chunk.key(chunkX - 1, chunkY)), right = chunks.get(Chunk.key(chunkX + 1, chunkY));
+			for(int y = minY; y <= maxY; y++) {
+				for(int x = minX; x <= maxX; x++) {
+					int cell = Chunk.index(x, y);
+					chunk.collision[cell] = (byte)collisionFlags(chunk, cell, above, below, left, right);
+				}
+			}
+		}
+	}
+	
+	/** Grows the extent of an unbounded grid to include a chunk, only called with the write lock held or during construction **/
+	private void include(int chunkX, int chunkY) {
+		if(chunks.size() == 1) {
+			minChunkX = maxChunkX = chunkX;
+			minChunkY = maxChunkY = chunkY;
+		} else {
+			if(chunkX < minChunkX) minChunkX = chunkX;
+			if(chunkX > maxChunkX) maxChunkX = chunkX;
+			if(chunkY < minChunkY) minChunkY = chunkY;
+			if(chunkY > maxChunkY) maxChunkY = chunkY;
+		}
+	}
+	
+	/** @return true if the grid has a width and height, false if it extends in every direction **/
+	public boolean isBounded() {
+		return width != 0;
+	}
+	
+	/**
+	 * @return the width of a bounded grid
+	 * @throws IllegalStateException if the grid is unbounded, use {@link #getLeft()} and {@link #getRight()} instead
+	 */
 	public int getWidth() {
-		return blocks[0].length;
+		if(width == 0)
+			throw new IllegalStateException("an unbounded grid has no width");
+		return width;
 	}
 	
+	/**
+	 * @return the height of a bounded grid
+	 * @throws IllegalStateException if the grid is unbounded, use {@link #getBottom()} and {@link #getTop()} instead
+	 */
 	public int getHeight() {
-		return blocks.length;
+		if(height == 0)
+			throw new IllegalStateException("an unbounded grid has no height");
+		return height;
+	}
+	
+	/** 
+	 * @return the leftmost column that can contain blocks: 0 for a bounded grid, or the left edge of the 
+	 * leftmost chunk that has contained blocks in an unbounded grid
+	 */
+	public int getLeft() {
+		return width == 0 ? minChunkX << Chunk.SHIFT : 0;
+	}
+	
+	/** @return the rightmost column that can contain blocks, see {@link #getLeft()} **/
+	public int getRight() {
+		return width == 0 ? (maxChunkX << Chunk.SHIFT) + Chunk.MASK : width - 1;
+	}
+	
+	/** @return the bottom row that can contain blocks, see {@link #getLeft()} **/
+	public int getBottom() {
+		return height == 0 ? minChunkY << Chunk.SHIFT : 0;
+	}
+	
+	/** @return the top row that can contain blocks, see {@link #getLeft()} **/
+	public int getTop() {
+		return height == 0 ? (maxChunkY << Chunk.SHIFT) + Chunk.MASK : height - 1;
+	}
+	
+	public StorageMode getStorageMode() {
+		return mode;
 	}
 }
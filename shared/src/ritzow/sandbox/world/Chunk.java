@@ -0,0 +1,107 @@
+package ritzow.sandbox.world;
+
+import ritzow.sandbox.data.Serializer;
+import ritzow.sandbox.data.TransportableDataReader;
+import ritzow.sandbox.world.block.Block;
+
+/**
+ * A fixed size square section of a BlockGrid. Chunks are only allocated by a BlockGrid
+ * once a block is placed in them, and are discarded once they contain no blocks.
+ * Chunks are modified by one writer at a time, but {@link #get(int)} and {@link #getType(int)} may 
+ * run concurrently with a writer. They must not throw if they observe a partially modified chunk, 
+ * because the BlockGrid discards and retries any read that overlapped with a write.
+ * @author Solomon Ritzow
+ */
+abstract class Chunk {
+	/** width and height of a chunk, in blocks **/
+	static final int SIZE = 16;
+
+	/** number of bits to shift a block coordinate by to get its chunk coordinate **/
+	static final int SHIFT = 4;
+
+	/** mask applied to a block coordinate to get its coordinate within a chunk **/
+	static final int MASK = SIZE - 1;
+
+	/** number of blocks in a chunk **/
+	static final int CELLS = SIZE * SIZE;
+
+	/** the packed coordinates of the chunk, see {@link #key(int, int)} **/
+	final long key;
+
+	/** collision flags of each cell, maintained by the BlockGrid, see {@link BlockGrid#getCollisionFlags(int, int)} **/
+	final byte[] collision;
+
+	Chunk(long key) {
+		this.key = key;
+		this.collision = new byte[CELLS];
+	}
+
+	/**
+	 * @param chunkX the horizontal chunk coordinate, the block coordinate shifted right by {@link #SHIFT}
+	 * @param chunkY the vertical chunk coordinate, the block coordinate shifted right by {@link #SHIFT}
+	 * @return both chunk coordinates packed into a long
+	 */
+	static long key(int chunkX, int chunkY) {
+		return ((long)chunkY << 32) | (chunkX & 0xFFFFFFFFL);
+	}
+
+	/** @return the horizontal chunk coordinate packed in the key **/
+	static int keyX(long key) {
+		return (int)key;
+	}
+
+	/** @return the vertical chunk coordinate packed in the key **/
+	static int keyY(long key) {
+		return (int)(key >> 32);
+	}
+
+	/**
+	 * @param x the horizontal position within the chunk
+	 * @param y the vertical position within the chunk
+	 * @return the index of the cell at the specified position
+	 */
+	static int index(int x, int y) {
+		return (y << SHIFT) | x;
+	}
+
+	/**
+	 * @param cell the index of the cell
+	 * @return the block in the cell, or null if there is no block
+	 */
+	abstract Block get(int cell);
+
+	/**
+	 * @param cell the index of the cell
+	 * @return the BlockRegistry type ID of the block in the cell, or BlockRegistry.AIR if there is no block
+	 */
+	abstract int getType(int cell);
+
+	/**
+	 * Replaces the block in the specified cell.
+	 * @param cell the index of the cell
+	 * @param block the new registered block, or null to remove the block
+	 */
+	abstract void set(int cell, Block block);
+
+	/** @return true if the chunk contains no blocks and can be discarded **/
+	abstract boolean isEmpty();
+
+	/**
+	 * Serializes the chunk in the palette format read by {@link #read(long, TransportableDataReader, BlockGrid.StorageMode)}.
+	 * @param ser the serializer used to serialize the palette blocks
+	 * @return the serialized chunk
+	 */
+	abstract byte[] getBytes(Serializer ser);
+
+	/**
+	 * Reads a chunk written by {@link #getBytes(Serializer)}.
+	 * @param key the packed coordinates of the chunk
+	 * @param data the reader to read the chunk from
+	 * @param mode the storage mode of the returned chunk
+	 * @return a new chunk
+	 */
+	static Chunk read(long key, TransportableDataReader data, BlockGrid.StorageMode mode) {
+		PaletteChunk chunk = new PaletteChunk(key, data);
+		return mode == BlockGrid.StorageMode.PALETTE ? chunk : new ReferenceChunk(chunk);
+	}
+}
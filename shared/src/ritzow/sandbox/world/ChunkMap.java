@@ -0,0 +1,115 @@
+package ritzow.sandbox.world;
+
+/**
+ * An open addressing hash table of chunks, keyed by the packed chunk coordinates returned by
+ * {@link Chunk#key(int, int)}. Each chunk stores its own key, so the table is a single array and a
+ * lookup that races with a writer reads one consistent array. Lookups never throw or loop forever
+ * if they observe a partially modified table, because the BlockGrid discards and retries any read
+ * that overlapped with a write.
+ * @author Solomon Ritzow
+ */
+final class ChunkMap {
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** chunks stored with linear probing, null entries are empty slots **/
+	private Chunk[] table;
+
+	/** number of chunks in the table **/
+	private int size;
+
+	ChunkMap() {
+		this.table = new Chunk[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * @param key the packed chunk coordinates
+	 * @return the chunk with the key, or null if there is no chunk
+	 */
+	Chunk get(long key) {
+		Chunk[] table = this.table;
+		int mask = table.length - 1;
+		for(int slot = hash(key) & mask, probes = 0; probes < table.length; slot = (slot + 1) & mask, probes++) {
+			Chunk chunk = table[slot];
+			if(chunk == null || chunk.key == key)
+				return chunk;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a chunk to the table, replacing any chunk with the same key.
+	 * @param chunk the chunk to add
+	 */
+	void put(Chunk chunk) {
+		if((size + 1) << 1 > table.length)
+			resize(table.length << 1);
+		int slot = find(table, chunk.key);
+		if(table[slot] == null)
+			size++;
+		table[slot] = chunk;
+	}
+
+	/**
+	 * Removes the chunk with the specified key, if there is one.
+	 * @param key the packed chunk coordinates
+	 */
+	void remove(long key) {
+		Chunk[] table = this.table;
+		int mask = table.length - 1;
+		int slot = find(table, key);
+		if(table[slot] == null)
+			return;
+		size--;
+
+		//shift later chunks in the same probe sequence back so that lookups do not stop at the empty slot
+		int empty = slot;
+		for(int next = (empty + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+			int home = hash(table[next].key) & mask;
+			if(((next - home) & mask) >= ((next - empty) & mask)) {
+				table[empty] = table[next];
+				empty = next;
+			}
+		}
+		table[empty] = null;
+	}
+
+	/** @return the number of chunks in the table **/
+	int size() {
+		return size;
+	}
+
+	/** @return a new array containing every chunk in the table, in no particular order **/
+	Chunk[] toArray() {
+		Chunk[] chunks = new Chunk[size];
+		int count = 0;
+		for(Chunk chunk : table) {
+			if(chunk != null)
+				chunks[count++] = chunk;
+		}
+		return chunks;
+	}
+
+	private void resize(int capacity) {
+		Chunk[] newTable = new Chunk[capacity];
+		for(Chunk chunk : table) {
+			if(chunk != null)
+				newTable[find(newTable, chunk.key)] = chunk;
+		}
+		this.table = newTable; //publish the filled table so concurrent lookups never see a partial copy
+	}
+
+	/** @return the slot containing the key, or the empty slot where it would be added **/
+	private static int find(Chunk[] table, long key) {
+		int mask = table.length - 1;
+		int slot = hash(key) & mask;
+		while(table[slot] != null && table[slot].key != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L; //spread neighboring chunk coordinates across the table
+		return (int)(hash >>> 32);
+	}
+}
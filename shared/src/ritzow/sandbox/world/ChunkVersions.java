@@ -0,0 +1,90 @@
+package ritzow.sandbox.world;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash table from packed chunk coordinates to the grid version at which the
+ * chunk was last modified. Entries are kept after a chunk is released so that its removal can
+ * be reported as a change. Not thread safe, the BlockGrid only accesses it while holding its lock.
+ * @author Solomon Ritzow
+ */
+final class ChunkVersions {
+	/** marks an empty slot, never a valid key because chunk coordinates are block coordinates shifted right by Chunk.SHIFT **/
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private long[] versions;
+	private int size;
+
+	ChunkVersions() {
+		this.keys = emptyKeys(16);
+		this.versions = new long[keys.length];
+	}
+
+	/**
+	 * @param key the packed chunk coordinates
+	 * @return the version at which the chunk was last modified, or 0 if it has never been modified
+	 */
+	long get(long key) {
+		int slot = find(keys, key);
+		return keys[slot] == EMPTY ? 0 : versions[slot];
+	}
+
+	/**
+	 * Records that a chunk was modified.
+	 * @param key the packed chunk coordinates
+	 * @param version the grid version of the modification
+	 */
+	void put(long key, long version) {
+		if((size + 1) << 1 > keys.length)
+			resize(keys.length << 1);
+		int slot = find(keys, key);
+		if(keys[slot] == EMPTY) {
+			keys[slot] = key;
+			size++;
+		}
+		versions[slot] = version;
+	}
+
+	/**
+	 * Calls {@code action} with the coordinates of every chunk modified after {@code since}, in no particular order.
+	 * @param since the grid version after which modifications are reported
+	 * @param action the action to perform on each modified chunk
+	 */
+	void forEachSince(long since, BlockGrid.ChunkAction action) {
+		for(int slot = 0; slot < keys.length; slot++) {
+			if(keys[slot] != EMPTY && versions[slot] > since)
+				action.accept(Chunk.keyX(keys[slot]), Chunk.keyY(keys[slot]));
+		}
+	}
+
+	private void resize(int capacity) {
+		long[] newKeys = emptyKeys(capacity);
+		long[] newVersions = new long[capacity];
+		for(int slot = 0; slot < keys.length; slot++) {
+			if(keys[slot] != EMPTY) {
+				int newSlot = find(newKeys, keys[slot]);
+				newKeys[newSlot] = keys[slot];
+				newVersions[newSlot] = versions[slot];
+			}
+		}
+		this.keys = newKeys;
+		this.versions = newVersions;
+	}
+
+	/** @return the slot containing the key, or the empty slot where it would be added **/
+	private static int find(long[] keys, long key) {
+		int mask = keys.length - 1;
+		int slot = (int)((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while(keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static long[] emptyKeys(int capacity) {
+		long[] keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		return keys;
+	}
+}
@@ -0,0 +1,89 @@
+package ritzow.sandbox.world;
+
+import java.util.Arrays;
+
+/**
+ * Stores the height of the topmost solid block in each column of a BlockGrid, grouped into entries of
+ * one chunk width each and kept in an open addressing hash table keyed by the horizontal chunk coordinate.
+ * Like {@link ChunkMap}, lookups read a single array and never throw if they race with a writer.
+ * @author Solomon Ritzow
+ */
+final class ColumnHeights {
+	private static final class Columns {
+		private final int chunkX;
+		private final int[] heights;
+
+		private Columns(int chunkX) {
+			this.chunkX = chunkX;
+			this.heights = new int[Chunk.SIZE];
+			Arrays.fill(heights, BlockGrid.NO_SURFACE);
+		}
+	}
+
+	private Columns[] table;
+	private int size;
+
+	ColumnHeights() {
+		this.table = new Columns[16];
+	}
+
+	/**
+	 * @param x the horizontal block coordinate of the column
+	 * @return the height of the topmost solid block in the column, or {@link BlockGrid#NO_SURFACE}
+	 */
+	int get(int x) {
+		Columns[] table = this.table;
+		int mask = table.length - 1, chunkX = x >> Chunk.SHIFT;
+		for(int slot = hash(chunkX) & mask, probes = 0; probes < table.length; slot = (slot + 1) & mask, probes++) {
+			Columns columns = table[slot];
+			if(columns == null)
+				return BlockGrid.NO_SURFACE;
+			else if(columns.chunkX == chunkX)
+				return columns.heights[x & Chunk.MASK];
+		}
+		return BlockGrid.NO_SURFACE;
+	}
+
+	/**
+	 * @param x the horizontal block coordinate of the column
+	 * @param height the height of the topmost solid block in the column, or {@link BlockGrid#NO_SURFACE}
+	 */
+	void set(int x, int height) {
+		int chunkX = x >> Chunk.SHIFT;
+		int slot = find(table, chunkX);
+		if(table[slot] == null) {
+			if(height == BlockGrid.NO_SURFACE)
+				return; //columns without an entry have no surface
+			if((size + 1) << 1 > table.length) {
+				resize(table.length << 1);
+				slot = find(table, chunkX);
+			}
+			table[slot] = new Columns(chunkX);
+			size++;
+		}
+		table[slot].heights[x & Chunk.MASK] = height;
+	}
+
+	private void resize(int capacity) {
+		Columns[] newTable = new Columns[capacity];
+		for(Columns columns : table) {
+			if(columns != null)
+				newTable[find(newTable, columns.chunkX)] = columns;
+		}
+		this.table = newTable; //publish the filled table so concurrent lookups never see a partial copy
+	}
+
+	/** @return the slot containing the chunk column, or the empty slot where it would be added **/
+	private static int find(Columns[] table, int chunkX) {
+		int mask = table.length - 1;
+		int slot = hash(chunkX) & mask;
+		while(table[slot] != null && table[slot].chunkX != chunkX) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(int chunkX) {
+		return (chunkX * 0x9E3779B9) >>> 16; //spread neighboring chunk columns across the table
+	}
+}
@@ -0,0 +1,140 @@
+package ritzow.sandbox.world;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import ritzow.sandbox.world.entity.Entity;
+
+/**
+ * Divides the slots of an {@link EntityList} into groups of consecutive entities of the same class, so that
+ * the World can process the entities of each class together. Processing one class at a time makes the
+ * virtual calls in each loop go to the same methods, which the processor predicts, and entity classes whose
+ * properties are the same for every instance, see {@link Entity#hasConstantProperties()}, have their
+ * properties read once per group instead of once per entity. When grouping is disabled every entity is in
+ * one group. Not thread safe.
+ * @author Solomon Ritzow
+ */
+final class EntityGroups {
+	/** properties stored as flags, see {@link #is(int, int)} **/
+	static final int
+		DO_COLLISION = 1,
+		DO_BLOCK_COLLISION_RESOLUTION = 2,
+		CAN_SLEEP = 4;
+
+	/** a number for each entity class, in the order the classes are first grouped **/
+	private static final AtomicInteger classCount = new AtomicInteger();
+	private static final ClassValue<Integer> classNumbers = new ClassValue<>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return classCount.getAndIncrement();
+		}
+	};
+
+	/** orders entities by class, the sort is stable so entities of a class stay in the order they were added **/
+	static final Comparator<Entity> BY_CLASS = Comparator.comparingInt(e -> classNumbers.get(e.getClass()));
+
+	/** the first slot of each group, followed by the slot after the last group **/
+	private int[] starts = new int[2];
+	private int count;
+
+	/** whether each group's properties were read from its first entity, and the properties if they were **/
+	private boolean[] constant = new boolean[1];
+	private float[] widths = new float[1], heights = new float[1], frictions = new float[1];
+	private int[] flags = new int[1], categories = new int[1], masks = new int[1];
+
+	/**
+	 * Finds the groups of an entity list with no empty slots.
+	 * @param entities the entities to group, sorted by {@link #BY_CLASS} if {@code byClass} is true
+	 * @param byClass true to group entities of the same class, false to put every entity in one group
+	 */
+	void update(EntityList entities, boolean byClass) {
+		count = 0;
+		int size = entities.size();
+		if(!byClass) {
+			if(size > 0)
+				addGroup(0, null);
+		} else {
+			Class<?> previous = null;
+			for(int i = 0; i < size; i++) {
+				Entity e = entities.get(i);
+				if(e.getClass() != previous) {
+					addGroup(i, e.hasConstantProperties() ? e : null);
+					previous = e.getClass();
+				}
+			}
+		}
+		starts[count] = size;
+	}
+
+	/** @param first the entity to read the group's properties from, or null if they differ between entities **/
+	private void addGroup(int start, Entity first) {
+		if(count + 1 == starts.length) {
+			starts = Arrays.copyOf(starts, starts.length * 2);
+			constant = Arrays.copyOf(constant, starts.length);
+			widths = Arrays.copyOf(widths, starts.length);
+			heights = Arrays.copyOf(heights, starts.length);
+			frictions = Arrays.copyOf(frictions, starts.length);
+			flags = Arrays.copyOf(flags, starts.length);
+			categories = Arrays.copyOf(categories, starts.length);
+			masks = Arrays.copyOf(masks, starts.length);
+		}
+		starts[count] = start;
+		constant[count] = first != null;
+		if(first != null) {
+			widths[count] = first.getWidth();
+			heights[count] = first.getHeight();
+			frictions[count] = first.getFriction();
+			flags[count] = (first.doCollision() ? DO_COLLISION : 0)
+					| (first.doBlockCollisionResolution() ? DO_BLOCK_COLLISION_RESOLUTION : 0)
+					| (first.canSleep() ? CAN_SLEEP : 0);
+			categories[count] = first.getCollisionCategory();
+			masks[count] = first.getCollisionMask();
+		}
+		count++;
+	}
+
+	/** @return the number of groups **/
+	int count() {
+		return count;
+	}
+
+	/** @return the first slot of the group **/
+	int start(int group) {
+		return starts[group];
+	}
+
+	/** @return the slot after the last slot of the group **/
+	int end(int group) {
+		return starts[group + 1];
+	}
+
+	/** @return true if every entity in the group has the properties returned by the following methods **/
+	boolean isConstant(int group) {
+		return constant[group];
+	}
+
+	float getWidth(int group) {
+		return widths[group];
+	}
+
+	float getHeight(int group) {
+		return heights[group];
+	}
+
+	float getFriction(int group) {
+		return frictions[group];
+	}
+
+	/** @return true if the group has all of the flags, a combination of the flag constants **/
+	boolean is(int group, int flags) {
+		return (this.flags[group] & flags) == flags;
+	}
+
+	int getCollisionCategory(int group) {
+		return categories[group];
+	}
+
+	int getCollisionMask(int group) {
+		return masks[group];
+	}
+}
@@ -0,0 +1,357 @@
+package ritzow.sandbox.world;
+
+import static ritzow.sandbox.util.Utility.intersection;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import ritzow.sandbox.world.entity.Entity;
+
+/**
+ * A uniform grid of square cells that stores each entity in the cell containing its position, so that
+ * entities near a point can be found without checking every entity in the world. Occupied cells are kept in
+ * an open addressing hash table keyed by packed cell coordinates, so the grid has no bounds. Entity positions
+ * are indexed when entities are added and when {@link #update(EntityList)} is called, and queries test the current
+ * bounds of the entities they find. Queries reuse internal buffers and do not allocate. Not thread safe.
+ * @author Solomon Ritzow
+ */
+final class EntityIndex {
+	/** width and height of each cell in blocks **/
+	private static final float CELL_SIZE = 8;
+
+	private static final class Cell {
+		private final long key;
+		private Entry[] entries;
+		private int size;
+
+		private Cell(long key) {
+			this.key = key;
+			this.entries = new Entry[4];
+		}
+	}
+
+	private static final class Entry {
+		private final Entity entity;
+		private Cell cell;
+		private int slot;
+
+		private Entry(Entity entity) {
+			this.entity = entity;
+		}
+	}
+
+	/** the location of each entity in the grid **/
+	private final Map<Entity, Entry> entries;
+
+	/** occupied cells stored with linear probing, null entries are empty slots **/
+	private Cell[] table;
+	private int cells;
+
+	/** half of the largest width and height of any indexed entity, used to extend queries into neighboring cells **/
+	private float maxHalfWidth, maxHalfHeight;
+
+	/** nearest entities found so far by {@link #queryNearest} and their squared distances, nearest first **/
+	private Entity[] nearest;
+	private float[] nearestDistances;
+	private int nearestCount;
+
+	EntityIndex() {
+		this.entries = new IdentityHashMap<>();
+		this.table = new Cell[16];
+		this.nearest = new Entity[0];
+		this.nearestDistances = new float[0];
+	}
+
+	/** @param entity the entity to add to the cell containing its position **/
+	void add(Entity entity) {
+		if(!entries.containsKey(entity)) {
+			Entry entry = new Entry(entity);
+			entries.put(entity, entry);
+			insert(entry, cellKey(entity.getPositionX(), entity.getPositionY()));
+			include(entity);
+		}
+	}
+
+	/** @param entity the entity to remove, if it is indexed **/
+	void remove(Entity entity) {
+		Entry entry = entries.remove(entity);
+		if(entry != null)
+			delete(entry);
+	}
+
+	/**
+	 * Moves each entity to the cell containing its current position.
+	 * @param entities every indexed entity
+	 */
+	void update(EntityList entities) {
+		maxHalfWidth = 0;
+		maxHalfHeight = 0;
+		for(int i = 0; i < entities.size(); i++) {
+			Entity entity = entities.get(i);
+			Entry entry = entries.get(entity);
+			if(entry != null) {
+				long key = cellKey(entity.getPositionX(), entity.getPositionY());
+				if(entry.cell.key != key) {
+					delete(entry);
+					insert(entry, key);
+				}
+				include(entity);
+			}
+		}
+	}
+
+	/**
+	 * Adds every entity that is partially or fully within a rectangle to {@code result}.
+	 * @param x the center x coordinate of the rectangle
+	 * @param y the center y coordinate of the rectangle
+	 * @param width the width of the rectangle
+	 * @param height the height of the rectangle
+	 * @param result the collection to add the entities to
+	 * @return the number of entities added
+	 */
+	int queryRectangle(float x, float y, float width, float height, Collection<? super Entity> result) {
+		float halfWidth = width * 0.5f + maxHalfWidth, halfHeight = height * 0.5f + maxHalfHeight;
+		int count = 0;
+		if(searchCells(x - halfWidth, y - halfHeight, x + halfWidth, y + halfHeight)) {
+			int left = cellCoordinate(x - halfWidth), right = cellCoordinate(x + halfWidth);
+			int bottom = cellCoordinate(y - halfHeight), top = cellCoordinate(y + halfHeight);
+			for(int cellY = bottom; cellY <= top; cellY++) {
+				for(int cellX = left; cellX <= right; cellX++) {
+					Cell cell = get(Chunk.key(cellX, cellY));
+					if(cell != null)
+						count += addInRectangle(cell, x, y, width, height, result);
+				}
+			}
+		} else {
+			for(Cell cell : table) {
+				if(cell != null)
+					count += addInRectangle(cell, x, y, width, height, result);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Adds every entity that is partially or fully within a circle to {@code result}.
+	 * @param x the x coordinate of the center of the circle
+	 * @param y the y coordinate of the center of the circle
+	 * @param radius the radius of the circle
+	 * @param result the collection to add the entities to
+	 * @return the number of entities added
+	 */
+	int queryRadius(float x, float y, float radius, Collection<? super Entity> result) {
+		float halfWidth = radius + maxHalfWidth, halfHeight = radius + maxHalfHeight;
+		int count = 0;
+		if(searchCells(x - halfWidth, y - halfHeight, x + halfWidth, y + halfHeight)) {
+			int left = cellCoordinate(x - halfWidth), right = cellCoordinate(x + halfWidth);
+			int bottom = cellCoordinate(y - halfHeight), top = cellCoordinate(y + halfHeight);
+			for(int cellY = bottom; cellY <= top; cellY++) {
+				for(int cellX = left; cellX <= right; cellX++) {
+					Cell cell = get(Chunk.key(cellX, cellY));
+					if(cell != null)
+						count += addInRadius(cell, x, y, radius, result);
+				}
+			}
+		} else {
+			for(Cell cell : table) {
+				if(cell != null)
+					count += addInRadius(cell, x, y, radius, result);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the entities with positions nearest to a point to {@code result}, nearest first.
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @param count the maximum number of entities to add
+	 * @param result the collection to add the entities to
+	 * @return the number of entities added, which is less than {@code count} only if there are fewer entities
+	 */
+	int queryNearest(float x, float y, int count, Collection<? super Entity> result) {
+		if(count <= 0 || entries.isEmpty())
+			return 0;
+		if(nearest.length < count) {
+			nearest = new Entity[count];
+			nearestDistances = new float[count];
+		}
+		nearestCount = 0;
+
+		//search rings of cells around the point until no unsearched cell can contain a nearer entity
+		int centerX = cellCoordinate(x), centerY = cellCoordinate(y);
+		int searched = 0;
+		for(int ring = 0; searched < entries.size(); ring++) {
+			float minDistance = Math.max(0, ring - 1) * CELL_SIZE;
+			if(nearestCount == count && nearestDistances[count - 1] <= minDistance * minDistance)
+				break;
+			if(ring > 0 && 8L * ring > cells) {
+				//the ring has more cells than the grid, so check the remaining cells directly
+				for(Cell cell : table) {
+					if(cell != null && ring(cell.key, centerX, centerY) >= ring)
+						addNearest(cell, x, y, count);
+				}
+				break;
+			}
+			for(int cellY = centerY - ring; cellY <= centerY + ring; cellY++) {
+				boolean edge = cellY == centerY - ring || cellY == centerY + ring;
+				for(int cellX = centerX - ring; cellX <= centerX + ring; cellX += edge || ring == 0 ? 1 : 2 * ring) {
+					Cell cell = get(Chunk.key(cellX, cellY));
+					if(cell != null)
+						searched += addNearest(cell, x, y, count);
+				}
+			}
+		}
+
+		for(int i = 0; i < nearestCount; i++) {
+			result.add(nearest[i]);
+		}
+		Arrays.fill(nearest, 0, nearestCount, null);
+		return nearestCount;
+	}
+
+	private static int addInRectangle(Cell cell, float x, float y, float width, float height, Collection<? super Entity> result) {
+		int count = 0;
+		for(int i = 0; i < cell.size; i++) {
+			Entity e = cell.entries[i].entity;
+			if(intersection(x, y, width, height, e.getPositionX(), e.getPositionY(), e.getWidth(), e.getHeight())) {
+				result.add(e);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int addInRadius(Cell cell, float x, float y, float radius, Collection<? super Entity> result) {
+		int count = 0;
+		for(int i = 0; i < cell.size; i++) {
+			Entity e = cell.entries[i].entity;
+			//distance from the center of the circle to the nearest point of the entity
+			float deltaX = Math.max(0, Math.abs(e.getPositionX() - x) - e.getWidth() * 0.5f);
+			float deltaY = Math.max(0, Math.abs(e.getPositionY() - y) - e.getHeight() * 0.5f);
+			if(deltaX * deltaX + deltaY * deltaY <= radius * radius) {
+				result.add(e);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** @return the number of entities in the cell **/
+	private int addNearest(Cell cell, float x, float y, int count) {
+		for(int i = 0; i < cell.size; i++) {
+			Entity e = cell.entries[i].entity;
+			float deltaX = e.getPositionX() - x, deltaY = e.getPositionY() - y;
+			float distance = deltaX * deltaX + deltaY * deltaY;
+			if(nearestCount < count || distance < nearestDistances[nearestCount - 1]) {
+				int index = Math.min(nearestCount, count - 1);
+				while(index > 0 && nearestDistances[index - 1] > distance) {
+					nearest[index] = nearest[index - 1];
+					nearestDistances[index] = nearestDistances[index - 1];
+					index--;
+				}
+				nearest[index] = e;
+				nearestDistances[index] = distance;
+				nearestCount = Math.min(nearestCount + 1, count);
+			}
+		}
+		return cell.size;
+	}
+
+	/** @return true if the rectangle covers fewer cells than are occupied, so looking up each covered cell is cheaper **/
+	private boolean searchCells(float left, float bottom, float right, float top) {
+		long columns = (long)cellCoordinate(right) - cellCoordinate(left) + 1;
+		long rows = (long)cellCoordinate(top) - cellCoordinate(bottom) + 1;
+		return columns * rows <= cells;
+	}
+
+	private void include(Entity entity) {
+		maxHalfWidth = Math.max(maxHalfWidth, entity.getWidth() * 0.5f);
+		maxHalfHeight = Math.max(maxHalfHeight, entity.getHeight() * 0.5f);
+	}
+
+	private void insert(Entry entry, long key) {
+		int slot = find(table, key);
+		Cell cell = table[slot];
+		if(cell == null) {
+			if((cells + 1) << 1 > table.length) {
+				resize(table.length << 1);
+				slot = find(table, key);
+			}
+			cell = table[slot] = new Cell(key);
+			cells++;
+		}
+		if(cell.size == cell.entries.length)
+			cell.entries = Arrays.copyOf(cell.entries, cell.size * 2);
+		entry.cell = cell;
+		entry.slot = cell.size;
+		cell.entries[cell.size++] = entry;
+	}
+
+	private void delete(Entry entry) {
+		Cell cell = entry.cell;
+		Entry last = cell.entries[--cell.size];
+		cell.entries[entry.slot] = last;
+		last.slot = entry.slot;
+		cell.entries[cell.size] = null;
+		if(cell.size == 0)
+			removeCell(cell.key);
+	}
+
+	private Cell get(long key) {
+		return table[find(table, key)];
+	}
+
+	private void removeCell(long key) {
+		int mask = table.length - 1;
+		int empty = find(table, key);
+		cells--;
+
+		//shift later cells in the same probe sequence back so that lookups do not stop at the empty slot
+		for(int next = (empty + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+			int home = hash(table[next].key) & mask;
+			if(((next - home) & mask) >= ((next - empty) & mask)) {
+				table[empty] = table[next];
+				empty = next;
+			}
+		}
+		table[empty] = null;
+	}
+
+	private void resize(int capacity) {
+		Cell[] newTable = new Cell[capacity];
+		for(Cell cell : table) {
+			if(cell != null)
+				newTable[find(newTable, cell.key)] = cell;
+		}
+		this.table = newTable;
+	}
+
+	/** @return the slot containing the key, or the empty slot where it would be added **/
+	private static int find(Cell[] table, long key) {
+		int mask = table.length - 1;
+		int slot = hash(key) & mask;
+		while(table[slot] != null && table[slot].key != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(long key) {
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> 32);
+	}
+
+	/** @return the number of rings of cells between a cell and the center cell **/
+	private static int ring(long key, int centerX, int centerY) {
+		return (int)Math.max(Math.abs((long)Chunk.keyX(key) - centerX), Math.abs((long)Chunk.keyY(key) - centerY));
+	}
+
+	private static int cellCoordinate(float position) {
+		return (int)Math.floor(position / CELL_SIZE);
+	}
+
+	private static long cellKey(float x, float y) {
+		return Chunk.key(cellCoordinate(x), cellCoordinate(y));
+	}
+}
@@ -0,0 +1,206 @@
+package ritzow.sandbox.world;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import ritzow.sandbox.world.entity.Entity;
+
+/**
+ * The entities in a World, in the order they were added. Removing an entity only empties its slot, so the
+ * other entities keep their positions until {@link #compact()} moves them into the empty slots, which the World
+ * does once per update. Entities are also kept in an {@link EntityTable} so that they can be found and removed
+ * by ID in constant time.
+ * <p>
+ * Entities must only be added and removed by one thread at a time, but any thread can iterate over the
+ * entities without locking. The slots are stored in generations: adding an entity fills a slot after the
+ * last slot of the current generation, and compacting or growing the slots publishes a new generation
+ * without changing the previous one. An iterator reads the generation and the number of filled slots when it
+ * is created, so it sees the entities added before it was created and not the entities added afterwards.
+ * It skips entities whose slots are emptied before it reaches them, and never fails if the entities are modified.
+ * @author Solomon Ritzow
+ */
+final class EntityList implements Iterable<Entity> {
+	private static final class Generation {
+		private final Entity[] slots;
+
+		/** the number of slots that have been filled, slots after this are never read **/
+		private volatile int size;
+
+		private Generation(Entity[] slots, int size) {
+			this.slots = slots;
+			this.size = size;
+		}
+	}
+
+	private volatile Generation current;
+
+	/** the entities keyed by ID, with the slot of each entity **/
+	private final EntityTable ids;
+
+	/** the number of empty slots in the current generation **/
+	private int removed;
+
+	EntityList(int capacity) {
+		this.current = new Generation(new Entity[Math.max(16, capacity)], 0);
+		this.ids = new EntityTable();
+	}
+
+	/** @return the number of slots, including the slots emptied since the last compaction **/
+	int size() {
+		return current.size;
+	}
+
+	/** @return the number of entities **/
+	int count() {
+		return current.size - removed;
+	}
+
+	/**
+	 * @param index the slot to read
+	 * @return the entity in the slot, or null if the entity was removed since the last compaction
+	 */
+	Entity get(int index) {
+		return current.slots[index];
+	}
+
+	/**
+	 * @param id the ID of an entity
+	 * @return the entity with the ID, or null if there is no such entity
+	 */
+	Entity getByID(int id) {
+		return ids.get(id);
+	}
+
+	/**
+	 * Adds an entity after the last slot.
+	 * @param entity the entity to add
+	 * @throws IllegalArgumentException if an entity with the same ID has already been added
+	 */
+	void add(Entity entity) {
+		if(ids.get(entity.getID()) != null)
+			throw new IllegalArgumentException("the world already contains an entity with ID " + entity.getID());
+		Generation generation = current;
+		int size = generation.size;
+		if(size == generation.slots.length) {
+			generation = new Generation(Arrays.copyOf(generation.slots, size * 2), size);
+			current = generation;
+		}
+		generation.slots[size] = entity;
+		ids.put(entity, size);
+		generation.size = size + 1; //publish the entity to iterating threads
+	}
+
+	/**
+	 * Empties the slot of an entity.
+	 * @param entity the entity to remove
+	 * @return true if the entity was removed, false if it was not in the list
+	 */
+	boolean remove(Entity entity) {
+		int index = ids.remove(entity);
+		if(index == -1)
+			return false;
+		current.slots[index] = null;
+		removed++;
+		return true;
+	}
+
+	/**
+	 * Moves entities into the empty slots, keeping them in the same order, so that every slot before
+	 * {@link #size()} contains an entity. Does nothing if no slots are empty.
+	 */
+	void compact() {
+		if(removed > 0) {
+			Generation generation = current;
+			Entity[] slots = new Entity[generation.slots.length];
+			int size = 0;
+			for(int i = 0; i < generation.size; i++) {
+				Entity entity = generation.slots[i];
+				if(entity != null) {
+					if(size != i)
+						ids.put(entity, size);
+					slots[size++] = entity;
+				}
+			}
+			removed = 0;
+			current = new Generation(slots, size); //threads iterating the previous generation are unaffected
+		}
+	}
+
+	/**
+	 * Sorts the entities, keeping entities that are equal in the same order.
+	 * @param order the order to sort the entities in
+	 * @throws IllegalStateException if any slots are empty, see {@link #compact()}
+	 */
+	void sort(Comparator<Entity> order) {
+		if(removed > 0)
+			throw new IllegalStateException("cannot sort a list with empty slots");
+		Generation generation = current;
+		Entity[] slots = Arrays.copyOf(generation.slots, generation.slots.length);
+		Arrays.sort(slots, 0, generation.size, order);
+		for(int i = 0; i < generation.size; i++) {
+			if(slots[i] != generation.slots[i])
+				ids.put(slots[i], i);
+		}
+		current = new Generation(slots, generation.size); //threads iterating the previous generation are unaffected
+	}
+
+	/** @return a new array containing the entities, in order **/
+	Entity[] toArray() {
+		Entity[] entities = new Entity[count()];
+		int count = 0;
+		for(Entity entity : this) {
+			if(count == entities.length)
+				break; //an entity was added by another thread
+			entities[count++] = entity;
+		}
+		return count == entities.length ? entities : Arrays.copyOf(entities, count);
+	}
+
+	@Override
+	public void forEach(Consumer<? super Entity> action) {
+		Generation generation = current;
+		Entity[] slots = generation.slots;
+		for(int i = 0, size = generation.size; i < size; i++) {
+			Entity entity = slots[i];
+			if(entity != null)
+				action.accept(entity);
+		}
+	}
+
+	@Override
+	public Iterator<Entity> iterator() {
+		Generation generation = current;
+		Entity[] slots = generation.slots;
+		int size = generation.size;
+		return new Iterator<>() {
+			private int index;
+			private Entity next = advance();
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Entity next() {
+				Entity entity = next;
+				if(entity == null)
+					throw new NoSuchElementException();
+				next = advance();
+				return entity;
+			}
+
+			/** @return the entity in the next filled slot, or null if there are no more entities **/
+			private Entity advance() {
+				while(index < size) {
+					Entity entity = slots[index++];
+					if(entity != null)
+						return entity;
+				}
+				return null;
+			}
+		};
+	}
+}
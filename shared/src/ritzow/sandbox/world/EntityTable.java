@@ -0,0 +1,131 @@
+package ritzow.sandbox.world;
+
+import ritzow.sandbox.world.entity.Entity;
+
+/**
+ * An open addressing hash table of entities keyed by their IDs, which also stores the position of each entity
+ * in an {@link EntityList}. Each entity stores its own ID, so looking up an ID neither boxes it nor follows
+ * any other references. Not thread safe.
+ * @author Solomon Ritzow
+ */
+final class EntityTable {
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** entities stored with linear probing, null entries are empty slots **/
+	private Entity[] table;
+	
+	/** the list position of the entity in each slot **/
+	private int[] positions;
+
+	/** number of entities in the table **/
+	private int size;
+
+	EntityTable() {
+		this.table = new Entity[INITIAL_CAPACITY];
+		this.positions = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * @param id the ID of the entity
+	 * @return the entity with the ID, or null if there is no entity with the ID
+	 */
+	Entity get(int id) {
+		Entity[] table = this.table;
+		int mask = table.length - 1;
+		for(int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+			Entity entity = table[slot];
+			if(entity == null || entity.getID() == id)
+				return entity;
+		}
+	}
+
+	/**
+	 * @param entity an entity
+	 * @return the list position of the entity, or -1 if the entity is not in the table
+	 */
+	int getPosition(Entity entity) {
+		int slot = find(table, entity.getID());
+		return table[slot] == entity ? positions[slot] : -1;
+	}
+
+	/**
+	 * Adds an entity to the table, replacing any entity with the same ID, or changes the position of an entity.
+	 * @param entity the entity to add
+	 * @param position the list position of the entity
+	 * @return the entity that was replaced, or null if there was no entity with the same ID
+	 */
+	Entity put(Entity entity, int position) {
+		if((size + 1) << 1 > table.length)
+			resize(table.length << 1);
+		int slot = find(table, entity.getID());
+		Entity previous = table[slot];
+		if(previous == null)
+			size++;
+		table[slot] = entity;
+		positions[slot] = position;
+		return previous;
+	}
+
+	/**
+	 * Removes an entity from the table, if it is in the table.
+	 * @param entity the entity to remove, which is not removed if a different entity has the same ID
+	 * @return the list position of the entity, or -1 if the entity was not in the table
+	 */
+	int remove(Entity entity) {
+		Entity[] table = this.table;
+		int[] positions = this.positions;
+		int mask = table.length - 1;
+		int slot = find(table, entity.getID());
+		if(table[slot] != entity)
+			return -1;
+		int position = positions[slot];
+		size--;
+
+		//shift later entities in the same probe sequence back so that lookups do not stop at the empty slot
+		int empty = slot;
+		for(int next = (empty + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+			int home = hash(table[next].getID()) & mask;
+			if(((next - home) & mask) >= ((next - empty) & mask)) {
+				table[empty] = table[next];
+				positions[empty] = positions[next];
+				empty = next;
+			}
+		}
+		table[empty] = null;
+		return position;
+	}
+
+	/** @return the number of entities in the table **/
+	int size() {
+		return size;
+	}
+
+	private void resize(int capacity) {
+		Entity[] newTable = new Entity[capacity];
+		int[] newPositions = new int[capacity];
+		for(int slot = 0; slot < table.length; slot++) {
+			if(table[slot] != null) {
+				int newSlot = find(newTable, table[slot].getID());
+				newTable[newSlot] = table[slot];
+				newPositions[newSlot] = positions[slot];
+			}
+		}
+		this.table = newTable;
+		this.positions = newPositions;
+	}
+
+	/** @return the slot containing the entity with the ID, or the empty slot where it would be added **/
+	private static int find(Entity[] table, int id) {
+		int mask = table.length - 1;
+		int slot = hash(id) & mask;
+		while(table[slot] != null && table[slot].getID() != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(int id) {
+		int hash = id * 0x9E3779B9; //spread consecutive IDs across the table
+		return hash ^ (hash >>> 16);
+	}
+}
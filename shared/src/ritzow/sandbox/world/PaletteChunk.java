@@ -0,0 +1,256 @@
+package ritzow.sandbox.world;
+
+import ritzow.sandbox.data.SerializationException;
+import ritzow.sandbox.data.Serializer;
+import ritzow.sandbox.data.TransportableDataReader;
+import ritzow.sandbox.data.UncheckedByteArrayDataWriter;
+import ritzow.sandbox.world.block.Block;
+import ritzow.sandbox.world.block.BlockRegistry;
+
+/**
+ * A chunk that stores a palette of the distinct block types it contains, and for each cell a bit-packed
+ * index into the palette. Each index uses 1, 2, 4, 8, or 16 bits depending on the size of the palette,
+ * which grows and shrinks as blocks are added and removed.
+ * @author Solomon Ritzow
+ */
+final class PaletteChunk extends Chunk {
+	/** BlockRegistry type IDs of the distinct blocks in the chunk, index 0 is always air, other air entries are unused **/
+	private short[] palette;
+
+	/** number of cells that use each palette entry **/
+	private int[] references;
+
+	/** number of palette entries that have been used, including unused entries below this index **/
+	private int size;
+
+	/** number of palette entries with at least one reference, plus air **/
+	private int live;
+
+	/** number of bits used to store the palette index of each cell **/
+	private int bits;
+
+	/** palette index of each cell, packed into longs **/
+	private long[] data;
+
+	PaletteChunk(long key) {
+		super(key);
+		this.bits = 1;
+		this.palette = new short[capacity(bits)];
+		this.references = new int[palette.length];
+		this.references[0] = CELLS;
+		this.size = 1;
+		this.live = 1;
+		this.data = new long[dataLength(bits)];
+	}
+
+	PaletteChunk(Chunk chunk) {
+		this(chunk.key);
+		for(int cell = 0; cell < CELLS; cell++) {
+			set(cell, chunk.get(cell));
+		}
+	}
+
+	PaletteChunk(long key, TransportableDataReader data) {
+		super(key);
+		this.size = data.readShort();
+		this.bits = data.readByte();
+		if(bits != 1 && bits != 2 && bits != 4 && bits != 8 && bits != 16)
+			throw new SerializationException("invalid chunk palette index size of " + bits + " bits");
+		if(size < 1 || size > capacity(bits))
+			throw new SerializationException("invalid chunk palette size " + size);
+		this.palette = new short[capacity(bits)];
+		this.references = new int[palette.length];
+		for(int i = 1; i < size; i++) {
+			Block block = data.readObject();
+			if(block != null && block.getTypeID() == BlockRegistry.AIR)
+				throw new SerializationException("block type " + block.getClass().getName() + " is not registered");
+			palette[i] = (short)(block == null ? BlockRegistry.AIR : block.getTypeID());
+		}
+		this.data = new long[dataLength(bits)];
+		for(int i = 0; i < this.data.length; i++) {
+			this.data[i] = data.readLong();
+		}
+		for(int cell = 0; cell < CELLS; cell++) {
+			int index = getIndex(cell);
+			if(index >= size || (index != 0 && palette[index] == BlockRegistry.AIR))
+				throw new SerializationException("chunk cell references invalid palette entry " + index);
+			references[index]++;
+		}
+		this.live = 1;
+		for(int i = 1; i < size; i++) {
+			if(references[i] > 0)
+				live++;
+			else
+				palette[i] = BlockRegistry.AIR;
+		}
+	}
+
+	@Override
+	byte[] getBytes(Serializer ser) {
+		//palette size, index size, palette blocks, packed indices
+		byte[][] blocks = new byte[size][];
+		int blockBytes = 0;
+		for(int i = 1; i < size; i++) {
+			blocks[i] = ser.serialize(BlockRegistry.getBlock(palette[i]));
+			blockBytes += blocks[i].length;
+		}
+		byte[] bytes = new byte[2 + 1 + blockBytes + data.length * 8];
+		UncheckedByteArrayDataWriter writer = new UncheckedByteArrayDataWriter(bytes, 0);
+		writer.writeShort((short)size);
+		writer.writeByte((byte)bits);
+		for(int i = 1; i < size; i++) {
+			writer.writeBytes(blocks[i]);
+		}
+		for(long word : data) {
+			writer.writeLong(word);
+		}
+		return bytes;
+	}
+
+	@Override
+	Block get(int cell) {
+		return BlockRegistry.getBlock(getType(cell));
+	}
+
+	@Override
+	int getType(int cell) {
+		//read each array once and derive the index size from the data length, so that a reader racing
+		//with a repack sees a consistent data array and index size and never indexes out of bounds
+		long[] data = this.data;
+		short[] palette = this.palette;
+		int bits = data.length * Long.SIZE / CELLS;
+		int bit = cell * bits;
+		int index = (int)(data[bit >>> 6] >>> (bit & 63)) & ((1 << bits) - 1);
+		return index < palette.length ? palette[index] : BlockRegistry.AIR;
+	}
+
+	@Override
+	void set(int cell, Block block) {
+		int previousIndex = getIndex(cell);
+		int index = block == null ? 0 : indexOf(block.getTypeID());
+		if(index != previousIndex) {
+			if(index < 0)
+				index = add(block.getTypeID());
+			setIndex(cell, index);
+			references[index]++;
+			if(--references[previousIndex] == 0 && previousIndex != 0)
+				release(previousIndex);
+		}
+	}
+
+	@Override
+	boolean isEmpty() {
+		return references[0] == CELLS;
+	}
+
+	private int getIndex(int cell) {
+		int bit = cell * bits;
+		return (int)(data[bit >>> 6] >>> (bit & 63)) & ((1 << bits) - 1);
+	}
+
+	private void setIndex(int cell, int index) {
+		int bit = cell * bits;
+		long mask = ((1L << bits) - 1) << (bit & 63);
+		data[bit >>> 6] = (data[bit >>> 6] & ~mask) | (((long)index << (bit & 63)) & mask);
+	}
+
+	private int indexOf(int type) {
+		for(int i = 1; i < size; i++) {
+			if(palette[i] == type)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds a block type to the palette, reusing an unused entry if there is one and widening the
+	 * cell indices if the palette is full. Existing palette indices are not changed.
+	 * @param type the type ID to add
+	 * @return the palette index of the type
+	 */
+	private int add(int type) {
+		int index = 1;
+		while(index < size && palette[index] != BlockRegistry.AIR) {
+			index++;
+		}
+		if(index == size) {
+			if(size == palette.length)
+				repack(bits << 1, false);
+			size++;
+		}
+		palette[index] = (short)type;
+		live++;
+		return index;
+	}
+
+	/**
+	 * Removes an entry with no references from the palette, and packs the cell indices into
+	 * fewer bits if the remaining entries fit.
+	 * @param index the palette index to release
+	 */
+	private void release(int index) {
+		palette[index] = BlockRegistry.AIR;
+		live--;
+		while(size > 1 && palette[size - 1] == BlockRegistry.AIR) {
+			size--;
+		}
+		int required = bitsFor(live);
+		if(required < bits)
+			repack(required, true);
+	}
+
+	/**
+	 * Copies the cell indices into a new array with a different number of bits per index.
+	 * @param newBits the new number of bits per index
+	 * @param compact whether to remove unused palette entries, which changes palette indices
+	 */
+	private void repack(int newBits, boolean compact) {
+		short[] newPalette = new short[capacity(newBits)];
+		int[] newReferences = new int[newPalette.length];
+		int[] remap = new int[size];
+		int newSize = 1;
+		newReferences[0] = references[0];
+		for(int i = 1; i < size; i++) {
+			if(!compact || palette[i] != BlockRegistry.AIR) {
+				int mapped = compact ? newSize++ : i;
+				remap[i] = mapped;
+				newPalette[mapped] = palette[i];
+				newReferences[mapped] = references[i];
+			}
+		}
+
+		long[] newData = new long[dataLength(newBits)];
+		for(int cell = 0; cell < CELLS; cell++) {
+			int bit = cell * newBits;
+			newData[bit >>> 6] |= (long)remap[getIndex(cell)] << (bit & 63);
+		}
+
+		this.palette = newPalette;
+		this.references = newReferences;
+		this.size = compact ? newSize : size;
+		this.data = newData;
+		this.bits = newBits;
+	}
+
+	private static int bitsFor(int entries) {
+		if(entries <= 2)
+			return 1;
+		else if(entries <= 4)
+			return 2;
+		else if(entries <= 16)
+			return 4;
+		else if(entries <= 256)
+			return 8;
+		else
+			return 16;
+	}
+
+	/** @return the maximum number of palette entries needed when using {@code bits} bits per index **/
+	private static int capacity(int bits) {
+		return Math.min(1 << bits, CELLS + 1);
+	}
+
+	private static int dataLength(int bits) {
+		return CELLS * bits / Long.SIZE;
+	}
+}
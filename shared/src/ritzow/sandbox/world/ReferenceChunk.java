@@ -0,0 +1,59 @@
+package ritzow.sandbox.world;
+
+import ritzow.sandbox.data.Serializer;
+import ritzow.sandbox.world.block.Block;
+import ritzow.sandbox.world.block.BlockRegistry;
+
+/**
+ * A chunk that stores a reference to the block in each of its cells.
+ * @author Solomon Ritzow
+ */
+final class ReferenceChunk extends Chunk {
+	private final Block[] blocks;
+
+	/** number of non-null blocks in the chunk **/
+	private int count;
+
+	ReferenceChunk(long key) {
+		super(key);
+		blocks = new Block[CELLS];
+	}
+
+	ReferenceChunk(Chunk chunk) {
+		this(chunk.key);
+		for(int cell = 0; cell < CELLS; cell++) {
+			set(cell, chunk.get(cell));
+		}
+	}
+
+	@Override
+	Block get(int cell) {
+		return blocks[cell];
+	}
+
+	@Override
+	int getType(int cell) {
+		Block block = blocks[cell];
+		return block == null ? BlockRegistry.AIR : block.getTypeID();
+	}
+
+	@Override
+	void set(int cell, Block block) {
+		Block previous = blocks[cell];
+		blocks[cell] = block;
+		if(previous == null && block != null)
+			count++;
+		else if(previous != null && block == null)
+			count--;
+	}
+
+	@Override
+	boolean isEmpty() {
+		return count == 0;
+	}
+
+	@Override
+	byte[] getBytes(Serializer ser) {
+		return new PaletteChunk(this).getBytes(ser);
+	}
+}
@@ -0,0 +1,117 @@
+package ritzow.sandbox.world;
+
+import java.util.Arrays;
+import ritzow.sandbox.world.entity.Entity;
+
+/**
+ * Finds the pairs of entities whose bounding boxes overlap by sorting the entities by their left edge and
+ * sweeping along the horizontal axis, so that only entities with overlapping horizontal extents are compared.
+ * Pairs whose collision categories and masks do not accept each other are rejected before they are reported.
+ * The arrays used to sort the entities are kept between updates to avoid allocating each update.
+ * Not thread safe.
+ * @author Solomon Ritzow
+ */
+final class SweepAndPrune {
+
+	/** Receives each pair of entities that might be colliding **/
+	interface PairAction {
+		/**
+		 * @param first the index of the entity that appears first in the list of entities
+		 * @param second the index of the entity that appears later in the list of entities
+		 */
+		void accept(int first, int second);
+	}
+
+	/**
+	 * sort key of each entity, the left edge in the upper 32 bits and the entity's position in the arrays below in
+	 * the lower 32 bits, which {@code indices} maps to its list index
+	 **/
+	private long[] keys;
+
+	/** the list index, collision categories, and bounds of each colliding entity, in the order they were added **/
+	private int[] indices, categories, masks;
+	private float[] left, right, bottom, top;
+
+	SweepAndPrune() {
+		resize(16);
+	}
+
+	/**
+	 * Calls {@code action} with every pair of entities that have collision enabled, accept each other's
+	 * collision categories, and have overlapping bounds. Pairs are reported in order of the left edge
+	 * of the first entity, with ties broken by list order, so the order is the same for the same entities.
+	 * The action may move the entities, but must not add or remove entities, and the bounds used to find pairs
+	 * are the bounds at the time of the call.
+	 * @param list the entities to check
+	 * @param groups the groups of the entities, the properties of constant groups are used instead of the entities' properties
+	 * @param action the action to perform on each candidate pair
+	 */
+	void findPairs(EntityList list, EntityGroups groups, PairAction action) {
+		int count = 0;
+		for(int group = 0; group < groups.count(); group++) {
+			if(groups.isConstant(group)) {
+				if(groups.is(group, EntityGroups.DO_COLLISION)) {
+					float halfWidth = groups.getWidth(group) * 0.5f, halfHeight = groups.getHeight(group) * 0.5f;
+					int category = groups.getCollisionCategory(group), mask = groups.getCollisionMask(group);
+					for(int i = groups.start(group); i < groups.end(group); i++) {
+						add(count++, i, list.get(i), halfWidth, halfHeight, category, mask);
+					}
+				}
+			} else {
+				for(int i = groups.start(group); i < groups.end(group); i++) {
+					Entity e = list.get(i);
+					if(e.doCollision()) {
+						add(count++, i, e, e.getWidth() * 0.5f, e.getHeight() * 0.5f, e.getCollisionCategory(), e.getCollisionMask());
+					}
+				}
+			}
+		}
+
+		Arrays.sort(keys, 0, count);
+
+		for(int a = 0; a < count; a++) {
+			int first = (int)keys[a];
+			for(int b = a + 1; b < count; b++) {
+				int second = (int)keys[b];
+				if(left[second] >= right[first])
+					break; //every later entity starts further right
+				if(bottom[second] < top[first] && bottom[first] < top[second]
+						&& (categories[first] & masks[second]) != 0 && (categories[second] & masks[first]) != 0) {
+					action.accept(Math.min(indices[first], indices[second]), Math.max(indices[first], indices[second]));
+				}
+			}
+		}
+	}
+
+	private void resize(int capacity) {
+		keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+		indices = indices == null ? new int[capacity] : Arrays.copyOf(indices, capacity);
+		categories = categories == null ? new int[capacity] : Arrays.copyOf(categories, capacity);
+		masks = masks == null ? new int[capacity] : Arrays.copyOf(masks, capacity);
+		left = left == null ? new float[capacity] : Arrays.copyOf(left, capacity);
+		right = right == null ? new float[capacity] : Arrays.copyOf(right, capacity);
+		bottom = bottom == null ? new float[capacity] : Arrays.copyOf(bottom, capacity);
+		top = top == null ? new float[capacity] : Arrays.copyOf(top, capacity);
+	}
+
+	/** Stores the bounds and collision categories of the entity at list index {@code index} at position {@code count} **/
+	private void add(int count, int index, Entity e, float halfWidth, float halfHeight, int category, int mask) {
+		if(count == keys.length)
+			resize(count * 2);
+		float x = e.getPositionX(), y = e.getPositionY();
+		keys[count] = ((long)sortable(x - halfWidth) << 32) | count;
+		indices[count] = index;
+		left[count] = x - halfWidth;
+		right[count] = x + halfWidth;
+		bottom[count] = y - halfHeight;
+		top[count] = y + halfHeight;
+		categories[count] = category;
+		masks[count] = mask;
+	}
+
+	/** @return an int that compares as a signed integer in the same order as {@code value} compares as a float **/
+	private static int sortable(float value) {
+		int bits = Float.floatToIntBits(value);
+		return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+	}
+}
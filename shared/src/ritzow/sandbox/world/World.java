@@ -1,23 +1,26 @@
 package ritzow.sandbox.world;
 
 import static ritzow.sandbox.util.Utility.average;
-import static ritzow.sandbox.util.Utility.intersection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.function.Predicate;
 import ritzow.sandbox.data.ByteUtil;
 import ritzow.sandbox.data.Serializer;
 import ritzow.sandbox.data.Transportable;
 import ritzow.sandbox.data.TransportableDataReader;
 import ritzow.sandbox.world.block.Block;
+import ritzow.sandbox.world.block.BlockRegistry;
 import ritzow.sandbox.world.entity.Entity;
+import ritzow.sandbox.world.entity.PhysicsStore;
 
 /**
  * A World instance manages a foreground and background BlockGrid, and a collection of entities.
@@ -26,8 +29,26 @@ import ritzow.sandbox.world.entity.Entity;
  */
 public class World implements Transportable, Iterable<Entity> {
 	
-	/** collection of entities in the world **/
-	private final List<Entity> entities; //TODO switch to using a Map<Integer, Entity> to store entity IDs?
+	/** distance below the lowest chunk of an unbounded foreground at which entities are removed **/
+	private static final float UNBOUNDED_REMOVAL_DEPTH = 100;
+	
+	/** maximum number of entities each parallel update task processes **/
+	private static final int PARALLEL_BATCH_SIZE = 128;
+	
+	/** entities that can sleep fall asleep after moving slower than this speed for {@code SLEEP_TIME} **/
+	private static final float SLEEP_SPEED = 0.005f, SLEEP_TIME = 30;
+	
+	/** maximum number of entities each parallel task integrates, larger because integrating an entity is cheap **/
+	private static final int PARALLEL_INTEGRATE_SIZE = 4096;
+	
+	/** maximum number of block boundaries an entity's movement is checked across in one update, the entity stops at the last one checked **/
+	private static final int MAX_SWEEP_CROSSINGS = 4096;
+	
+	/** returned when no solid block is found, smaller than any block coordinate **/
+	private static final int NO_BLOCK = Integer.MIN_VALUE;
+	
+	/** collection of entities in the world, which can be iterated from any thread **/
+	private final EntityList entities;
 	
 	/** blocks in the world that collide with entities and and are rendered **/
 	private final BlockGrid foreground, background;
@@ -41,6 +62,40 @@ public class World implements Transportable, Iterable<Entity> {
 	/** called when an entity is removed from the world **/
 	private Consumer<Entity> onRemove;
 	
+	/** called when an entity falls asleep **/
+	private Consumer<Entity> onSleep;
+	
+	/** the version of the foreground when sleeping entities were last woken by block changes **/
+	private long foregroundVersion;
+	
+	/** entities near changed blocks, reused each update **/
+	private final List<Entity> nearChangedBlocks = new ArrayList<>();
+	
+	/** finds the pairs of entities that might collide each update **/
+	private final SweepAndPrune broadphase = new SweepAndPrune();
+	
+	/** the groups of entities processed together during each update **/
+	private final EntityGroups groups = new EntityGroups();
+	
+	/** whether entities are grouped by class, and whether they are sorted by class since an entity was last added **/
+	private boolean groupByClass, sortedByClass;
+	
+	/** the location of each entity, used to find entities in an area **/
+	private final EntityIndex index = new EntityIndex();
+	
+	/** the position and velocity of each entity **/
+	private final PhysicsStore physics = new PhysicsStore();
+	
+	/** runs the parallel phases of each update, or null to update on the calling thread **/
+	private volatile ForkJoinPool pool;
+	
+	/** indices of the pairs of entities that collided during the current update, and their count **/
+	private int[] collisions = new int[0];
+	private int collisionCount;
+	
+	/** the partners of each collided entity, grouped by entity **/
+	private int[] collisionStart = new int[0], collisionPartners = new int[0];
+	
 	/**
 	 * Initializes a new World object with a foreground, background, entity storage, and gravity.
 	 * @param width the width of the foreground and background
@@ -48,9 +103,21 @@ public class World implements Transportable, Iterable<Entity> {
 	 * @param gravity the amount of gravity
 	 */
 	public World(int width, int height, float gravity) {
-		entities = new ArrayList<>(100);
-		foreground = new BlockGrid(width, height);
-		background = new BlockGrid(width, height);
+		this(new BlockGrid(width, height), new BlockGrid(width, height), gravity);
+	}
+	
+	/**
+	 * Initializes a new World object with an unbounded foreground and background that extend in every direction.
+	 * @param gravity the amount of gravity
+	 */
+	public World(float gravity) {
+		this(new BlockGrid(), new BlockGrid(), gravity);
+	}
+	
+	private World(BlockGrid foreground, BlockGrid background, float gravity) {
+		entities = new EntityList(100);
+		this.foreground = foreground;
+		this.background = background;
 		this.gravity = gravity;
 	}
 	
@@ -59,9 +126,12 @@ public class World implements Transportable, Iterable<Entity> {
 		foreground = Objects.requireNonNull(reader.readObject());
 		background = Objects.requireNonNull(reader.readObject());
 		int entityCount = reader.readInteger();
-		entities = new ArrayList<>(entityCount);
+		entities = new EntityList(entityCount);
 		for(int i = 0; i < entityCount; i++) {
-			entities.add(Objects.requireNonNull(reader.readObject()));
+			Entity e = Objects.requireNonNull(reader.readObject());
+			entities.add(e);
+			physics.add(e);
+			index.add(e);
 		}
 		lastEntityID = reader.readInteger();
 	}
@@ -77,8 +147,9 @@ public class World implements Transportable, Iterable<Entity> {
 		
 		int entityIDCounter = this.lastEntityID;
 		
-		//number of entities currently in the world
-		int numEntities = entities.size();
+		//entities currently in the world
+		Entity[] entities = this.entities.toArray();
+		int numEntities = entities.length;
 		
 		//number of bytes of entity data
 		int totalEntityBytes = 0;
@@ -87,7 +158,7 @@ public class World implements Transportable, Iterable<Entity> {
 		byte[][] entityBytes = new byte[numEntities][];
 		
 		for(int i = 0; i < numEntities; i++) {
-			Entity e = entities.get(i);
+			Entity e = entities[i];
 			if(entityFilter.test(e)) {
 				try {
 					byte[] bytes = ser.serialize(e);
@@ -164,6 +235,53 @@ public class World implements Transportable, Iterable<Entity> {
 	public final BlockGrid getBackground() {
 		return background;
 	}
+
+	/**
+	 * Creates a World with the same gravity, entities, and grid bounds as this World, but no blocks,
+	 * so that the world can be sent to a client that will receive its blocks chunk by chunk.
+	 * @return the new World, which shares its entity instances with this World and should only be serialized
+	 */
+	public final World copyWithoutBlocks() {
+		World world = new World(foreground.emptyCopy(), background.emptyCopy(), gravity);
+		for(Entity e : entities) {
+			world.entities.add(e); //the entities stay in this world's physics store and index
+		}
+		world.lastEntityID = lastEntityID;
+		return world;
+	}
+	
+	/**
+	 * Copies the foreground and background blocks in a chunk of the world.
+	 * @param chunkX the horizontal chunk coordinate, see {@link BlockGrid#toChunkCoordinate(int)}
+	 * @param chunkY the vertical chunk coordinate
+	 * @return the copied blocks, which are empty if the chunk is outside of the world
+	 */
+	public final WorldChunk getChunk(int chunkX, int chunkY) {
+		return new WorldChunk(chunkX, chunkY, foreground.copyChunk(chunkX, chunkY), background.copyChunk(chunkX, chunkY));
+	}
+	
+	/**
+	 * Replaces the foreground and background blocks in a chunk of the world.
+	 * @param chunk the blocks to store, created by {@link #getChunk(int, int)}
+	 * @throws IndexOutOfBoundsException if the chunk is outside of the world
+	 */
+	public final void setChunk(WorldChunk chunk) {
+		foreground.setChunk(chunk.getChunkX(), chunk.getChunkY(), chunk.foreground);
+		background.setChunk(chunk.getChunkX(), chunk.getChunkY(), chunk.background);
+	}
+	
+	/**
+	 * Removes every foreground and background block in a chunk of the world. A chunk outside of the world
+	 * contains no blocks, so removing it does nothing.
+	 * @param chunkX the horizontal chunk coordinate
+	 * @param chunkY the vertical chunk coordinate
+	 */
+	public final void removeChunk(int chunkX, int chunkY) {
+		if(foreground.isValid(chunkX * BlockGrid.CHUNK_SIZE, chunkY * BlockGrid.CHUNK_SIZE)) {
+			foreground.setChunk(chunkX, chunkY, null);
+			background.setChunk(chunkX, chunkY, null);
+		}
+	}
 	
 	/**
 	 * Enables entity removal and provides an action to take when the world removes entities when updated
@@ -181,23 +299,32 @@ public class World implements Transportable, Iterable<Entity> {
 		this.onRemove = e -> {};
 	}
 	
+	/**
+	 * Provides an action to take when an entity falls asleep, see {@link Entity#canSleep()}.
+	 * @param onSleep action to take when an entity falls asleep, or null
+	 */
+	public void setOnSleep(Consumer<Entity> onSleep) {
+		this.onSleep = onSleep;
+	}
+	
 	public void removeIf(Predicate<Entity> predicate) {
-		Iterator<Entity> it = entities.iterator();
-		while(it.hasNext()) {
-			if(predicate.test(it.next()))
-				it.remove();
+		for(int i = 0; i < entities.size(); i++) {
+			Entity e = entities.get(i);
+			if(e != null && predicate.test(e))
+				remove(e);
 		}
 	}
 	
+	/**
+	 * Returns an iterator over the entities in the world, which can be used on any thread without locking.
+	 * The iterator returns the entities that were in the world when it was created, except those
+	 * removed before the iterator reaches them, and never throws {@code ConcurrentModificationException}.
+	 * @return an iterator that does not support removal
+	 */
 	@Override
 	public Iterator<Entity> iterator() {
 		return entities.iterator();
 	}
-	
-	@Override
-	public Spliterator<Entity> spliterator() {
-		return entities.spliterator();
-	}
 
 	@Override
 	public void forEach(Consumer<? super Entity> consumer) {
@@ -210,28 +337,76 @@ public class World implements Transportable, Iterable<Entity> {
 	 * @param y the center y coordinate
 	 * @param width the width of the rectangle
 	 * @param height the height of the rectangle
-	 * @return
+	 * @return a new collection containing the entities
 	 */
 	public Collection<Entity> getEntitiesInRectangle(float x, float y, float width, float height) {
-		Collection<Entity> col = null;
-		for(Entity e : entities) {
-			if(intersection(x, y, width, height, e.getPositionX(), e.getPositionY(), e.getWidth(), e.getHeight())) {
-				if(col == null) {
-					col = new ArrayList<>();
-					col.add(e);
-				}
-			}
-		}
-		return col == null ? Collections.emptyList() : col;
+		Collection<Entity> col = new ArrayList<>();
+		index.queryRectangle(x, y, width, height, col);
+		return col;
+	}
+	
+	/*
+	 * The following queries look up entities in a grid indexed by entity position, which is updated
+	 * when entities are added and at the end of each call to update, so an entity moved by other means
+	 * is found at its new position only if it is still near the position it was indexed at.
+	 */
+	
+	/**
+	 * Adds the entities that are partially or fully within the given rectangle bounds to a collection.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width of the rectangle
+	 * @param height the height of the rectangle
+	 * @param result the collection to add the entities to
+	 * @return the number of entities added
+	 */
+	public int getEntitiesInRectangle(float x, float y, float width, float height, Collection<? super Entity> result) {
+		return index.queryRectangle(x, y, width, height, result);
+	}
+	
+	/**
+	 * Adds the entities that are partially or fully within the given distance of a point to a collection.
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @param radius the maximum distance from the point
+	 * @param result the collection to add the entities to
+	 * @return the number of entities added
+	 */
+	public int getEntitiesInRadius(float x, float y, float radius, Collection<? super Entity> result) {
+		return index.queryRadius(x, y, radius, result);
+	}
+	
+	/**
+	 * Adds the entities whose positions are nearest to a point to a collection, nearest first.
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @param count the maximum number of entities to add
+	 * @param result the collection to add the entities to
+	 * @return the number of entities added, less than {@code count} only if the world has fewer entities
+	 */
+	public int getNearestEntities(float x, float y, int count, Collection<? super Entity> result) {
+		return index.queryNearest(x, y, count, result);
+	}
+	
+	/**
+	 * @param id the ID of an entity
+	 * @return the entity in the world with the ID, or null if there is no such entity
+	 */
+	public final Entity getEntity(int id) {
+		return entities.getByID(id);
 	}
 	
 	/**
 	 * Adds the provided non-null Entity to the world.
 	 * @param e the entity to add.
+	 * @throws IllegalArgumentException if another entity in the world has the same ID
 	 */
 	public final void add(Entity e) {
 		Objects.requireNonNull(e);
 		entities.add(e);
+		sortedByClass = false;
+		physics.add(e);
+		index.add(e);
 	}
 
 	/**
@@ -239,7 +414,10 @@ public class World implements Transportable, Iterable<Entity> {
 	 * @param e the entity to remove.
 	 */
 	public final void remove(Entity e) {
-		entities.remove(e);
+		if(entities.remove(e)) {
+			physics.remove(e);
+			index.remove(e);
+		}
 	}
 	
 	public final float getGravity() {
@@ -250,84 +428,419 @@ public class World implements Transportable, Iterable<Entity> {
 		this.gravity = gravity;
 	}
 
+	/**
+	 * Sets the pool used to run the phases of {@link #update(float)} that process each entity independently.
+	 * Entity {@code update} and {@code onCollision} implementations may then run concurrently on different
+	 * entities, so they must only modify the entity they are called on and must not add or remove entities.
+	 * The result of an update is the same with or without a pool.
+	 * @param pool the pool to run parallel phases on, or null to run every phase on the updating thread
+	 */
+	public void setUpdatePool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Sets whether {@link #update(float)} processes the entities of each class together. Grouping reorders the
+	 * entities so that each loop over them calls the methods of one class at a time, and reads the properties
+	 * of classes that declare {@link Entity#hasConstantProperties()} once for all of their entities. Grouping
+	 * sorts the entities in the update after an entity is added, and changes the order entities are updated in.
+	 * @param groupByClass true to group entities by class, false to process them in the order they were added
+	 */
+	public void setGroupByClass(boolean groupByClass) {
+		this.groupByClass = groupByClass;
+	}
+
 	/**
 	 * Updates the entities in the world, simulating a single timestep of the provided amount. 
-	 * Entities are updated, gravity is applied, entity vs entity collisions are resolved, 
-	 * and entity vs block collisions are resolved. If {@code setRemoveEntities has been called},
-	 * entities that are below the bottom of the world will be removed and, if provided, the entity
-	 * remove handler will be called.
+	 * If {@code setRemoveEntities has been called}, entities that are below the bottom of the world
+	 * will first be removed and, if provided, the entity remove handler will be called. The bottom of
+	 * an unbounded world is {@code UNBOUNDED_REMOVAL_DEPTH} below its lowest chunk. The update then runs
+	 * in phases: entities are updated, entities are moved by their velocities and gravity is applied,
+	 * entity vs entity collisions are resolved for the pairs of entities found by the broadphase, entities are notified of the entity collisions,
+	 * and entity vs block collisions are resolved. Phases other than entity vs entity collision resolution
+	 * process batches of entities in parallel if an update pool has been set. Entities that can sleep fall
+	 * asleep after resting on a solid block for long enough, and are not updated, moved, or collision checked
+	 * against blocks until a nearby block changes, another entity touches them, or their velocity or position is set.
 	 * @param time the amount of time to simulate.
 	 */
 	public final void update(float time) {
-		for(int i = 0; i < entities.size(); i++) {
-			Entity e = entities.get(i);
-			
-			//remove entities that are below the world or are flagged for deletion
-			if(onRemove != null) {
-				if(e.getPositionY() < 0 || e.getShouldDelete()) {
-					onRemove.accept(entities.remove(i));
-					i = Math.max(0, i - 1);
-					continue;
+		float removalHeight = foreground.isBounded() ? 0 : foreground.getBottom() - UNBOUNDED_REMOVAL_DEPTH;
+		
+		//remove entities that are below the world or are flagged for deletion
+		if(onRemove != null) {
+			for(int i = 0; i < entities.size(); i++) {
+				Entity e = entities.get(i);
+				if(e != null && (e.getPositionY() < removalHeight || e.getShouldDelete())) {
+					remove(e);
+					onRemove.accept(e);
 				}
 			}
+		}
+		
+		//fill the slots of the entities removed since the last update, the remaining phases use every slot
+		entities.compact();
+		if(groupByClass && !sortedByClass) {
+			entities.sort(EntityGroups.BY_CLASS);
+			sortedByClass = true;
+		}
+		groups.update(entities, groupByClass);
+		
+		//wake sleeping entities near blocks that changed since the last update
+		if(foreground.getVersion() != foregroundVersion) {
+			foregroundVersion = foreground.getChangedChunks(foregroundVersion, (chunkX, chunkY) -> {
+				float size = BlockGrid.CHUNK_SIZE, left = chunkX * size - 0.5f, bottom = chunkY * size - 0.5f;
+				index.queryRectangle(left + size/2, bottom + size/2, size + 2, size + 2, nearChangedBlocks);
+			});
+			for(Entity e : nearChangedBlocks) {
+				e.wake();
+			}
+			nearChangedBlocks.clear();
+		}
+		
+		//update anything specific to an awake entity
+		forEachGroup((group, start, end) -> {
+			for(int i = start; i < end; i++) {
+				Entity e = entities.get(i);
+				if(!e.isSleeping())
+					e.update(this, time);
+			}
+		});
+		
+		//remember where entities start moving from, to interpolate rendering and to sweep them through the blocks
+		physics.savePositions();
+		
+		//update awake entity positions, then apply gravity
+		forEachRange(physics.getAwakeCount(), PARALLEL_INTEGRATE_SIZE, (start, end) -> physics.integrate(start, end, time, gravity));
+		
+		//resolve entity vs. entity collisions between the pairs of entities that overlap, the pairs share entities so this is serial
+		collisionCount = 0;
+		broadphase.findPairs(entities, groups, (first, second) -> {
+			Entity e = entities.get(first), o = entities.get(second);
+			if(e.isSleeping() && o.isSleeping())
+				return; //neither entity has moved
+			boolean collision;
 			
-			//update entity position and velocity, and anything else specific to an entity
-			e.update(this, time);
-			
-			//apply gravity
-			e.setVelocityY(e.getVelocityY() - gravity * time);
+			if(e.doEntityCollisionResolution() && o.doEntityCollisionResolution()) {
+				if(e.getMass() < o.getMass())
+					collision = resolveCollision(e, o, time);
+				else if(e.getMass() > o.getMass())
+					collision = resolveCollision(o, e, time);
+				else
+					collision = false; //TODO what do I do when entities have same mass?
+			} else {
+				collision = checkCollision(e, o);
+			}
 			
-			//check if collision checking is enabled
-			if(e.doCollision()) {
-				
-				//check for entity vs. entity collisions with all entities that have not already been collision checked with (for first element, all entites, for last, no entities)
-				for(int j = i + 1; j < entities.size(); j++) {
-					Entity o = entities.get(j);
-					if(o != null && o.doCollision()) {
-						boolean collision;
-						
-						if(e.doEntityCollisionResolution() && o.doEntityCollisionResolution()) {
-							if(e.getMass() < o.getMass())
-								collision = resolveCollision(e, o, time);
-							else if(e.getMass() > o.getMass())
-								collision = resolveCollision(o, e, time);
-							else
-								collision = false; //TODO what do I do when entities have same mass?
-						} else {
-							collision = checkCollision(e, o);
-						}
-						
-						if(collision) {
-							e.onCollision(this, o, time);
-							o.onCollision(this, e, time);
+			if(collision) {
+				e.wake();
+				o.wake();
+				addCollision(first, second);
+			}
+		});
+		
+		//notify each entity of its collisions, in the order the collisions were resolved
+		if(collisionCount > 0) {
+			groupCollisions();
+			forEachEntity(i -> {
+				Entity e = entities.get(i);
+				for(int c = collisionStart[i]; c < collisionStart[i + 1]; c++) {
+					e.onCollision(this, entities.get(collisionPartners[c]), time);
+				}
+			});
+		}
+		
+		//move entities back along their movement to the first block they would enter, sleeping entities are already resting on a block
+		forEachGroup((group, start, end) -> {
+			if(groups.isConstant(group)) {
+				if(groups.is(group, EntityGroups.DO_COLLISION | EntityGroups.DO_BLOCK_COLLISION_RESOLUTION)) {
+					float width = groups.getWidth(group), height = groups.getHeight(group), friction = groups.getFriction(group);
+					for(int i = start; i < end; i++) {
+						Entity e = entities.get(i);
+						if(!e.isSleeping())
+							resolveBlockCollisions(e, width, height, friction, time);
+					}
+				}
+			} else {
+				for(int i = start; i < end; i++) {
+					Entity e = entities.get(i);
+					if(!e.isSleeping() && e.doCollision() && e.doBlockCollisionResolution())
+						resolveBlockCollisions(e, e.getWidth(), e.getHeight(), e.getFriction(), time);
+				}
+			}
+		});
+		
+		//put entities to sleep that have rested on a solid block for long enough, an entity resting
+		//on a block alternates between no vertical velocity and the velocity gained from one update of gravity
+		float maxFall = gravity * time + SLEEP_SPEED;
+		for(int group = 0; group < groups.count(); group++) {
+			boolean constant = groups.isConstant(group);
+			if(constant && !groups.is(group, EntityGroups.CAN_SLEEP))
+				continue;
+			for(int i = groups.start(group); i < groups.end(group); i++) {
+				Entity e = entities.get(i);
+				if(!e.isSleeping() && (constant || e.canSleep())) {
+					if(Math.abs(e.getVelocityX()) < SLEEP_SPEED && e.getVelocityY() < SLEEP_SPEED && e.getVelocityY() > -maxFall
+							&& isSupported(e, constant ? groups.getWidth(group) : e.getWidth(), constant ? groups.getHeight(group) : e.getHeight())) {
+						if(physics.rest(e, time) >= SLEEP_TIME) {
+							physics.sleep(e);
+							if(onSleep != null)
+								onSleep.accept(e);
 						}
+					} else {
+						physics.stopResting(e);
 					}
 				}
-
-				//Check for entity collisions with blocks
-				if(e.doBlockCollisionResolution()) {
-					int leftBound = Math.max(0, (int)Math.floor(e.getPositionX() - e.getWidth()));
-					int topBound = Math.min(foreground.getHeight(), (int)Math.ceil(e.getPositionY() + e.getHeight()));
-					int rightBound = Math.min(foreground.getWidth(), (int)Math.ceil(e.getPositionX() + e.getWidth()));
-					int bottomBound = Math.max(0, (int)Math.floor(e.getPositionY() - e.getHeight()));
-					
-					for(int row = bottomBound; row < topBound; row++) {
-						for(int column = leftBound; column < rightBound; column++) {
-							Block block = foreground.get(column, row);
-							if(foreground.isBlock(column, row) && block.isSolid()) {
-								boolean blockUp = foreground.isBlock(column, row + 1);
-								boolean blockDown = foreground.isBlock(column, row - 1);
-								boolean blockLeft = foreground.isBlock(column - 1, row);
-								boolean blockRight = foreground.isBlock(column + 1, row);
-								if(!(blockUp && blockDown && blockLeft && blockRight)) {
-									resolveBlockCollision(this, e, block, column, row, time, blockUp, blockLeft, blockRight, blockDown);
-								}
-							}
+			}
+		}
+		
+		//move entities to the index cells containing their new positions
+		index.update(entities);
+	}
+	
+	/** @return true if there is a solid block directly below the entity, which has the provided width and height **/
+	private boolean isSupported(Entity e, float width, float height) {
+		int row = Math.round(e.getPositionY() - height/2 - 0.5f);
+		int left = Math.round(e.getPositionX() - width/2), right = Math.round(e.getPositionX() + width/2);
+		for(int column = left; column <= right; column++) {
+			if((foreground.getCollisionFlags(column, row) & BlockGrid.SOLID) != 0)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Moves an entity from its position before the update to its current position, stopping at the first solid block
+	 * in each direction and sliding along it in the other direction. Only the blocks that the leading edges of the
+	 * entity cross are checked, in the order they are crossed, so an entity can't pass through a block no matter how
+	 * fast it moves. The width, height, and friction are the entity's, passed in so they can be read once per group.
+	 */
+	private void resolveBlockCollisions(Entity e, float width, float height, float friction, float time) {
+		float halfWidth = width/2, halfHeight = height/2;
+		float startX = e.getPreviousPositionX(), startY = e.getPreviousPositionY();
+		float moveX = e.getPositionX() - startX, moveY = e.getPositionY() - startY;
+		
+		if(Float.isFinite(moveX) && Float.isFinite(moveY) && (moveX != 0 || moveY != 0)) {
+			float x = e.getPositionX(), y = e.getPositionY();
+			boolean movingX = moveX != 0, movingY = moveY != 0;
+			int stepX = moveX > 0 ? 1 : -1, stepY = moveY > 0 ? 1 : -1;
+			
+			//the next column and row the leading edges of the entity will enter
+			int column = moveX > 0 ? lastCell(startX + halfWidth) + 1 : firstCell(startX - halfWidth) - 1;
+			int row = moveY > 0 ? lastCell(startY + halfHeight) + 1 : firstCell(startY - halfHeight) - 1;
+			
+			//the fraction of the movement up to which every crossed block has been checked
+			float checked = 0;
+			int crossings = 0;
+			for(; (movingX || movingY) && crossings < MAX_SWEEP_CROSSINGS; crossings++) {
+				//the fraction of the movement after which the entity enters the next column and row
+				float columnX = column - stepX * (0.5f + halfWidth), rowY = row - stepY * (0.5f + halfHeight);
+				float timeX = movingX ? (columnX - startX) / moveX : Float.POSITIVE_INFINITY;
+				float timeY = movingY ? (rowY - startY) / moveY : Float.POSITIVE_INFINITY;
+				
+				if(Math.min(timeX, timeY) >= 1) {
+					break; //the entity reaches its destination before entering another block
+				} else if(timeX <= timeY) {
+					float currentY = movingY ? startY + moveY * timeX : y;
+					int blockRow = findSolidRow(column, firstCell(currentY - halfHeight), lastCell(currentY + halfHeight));
+					if(blockRow == NO_BLOCK) {
+						column += stepX;
+						checked = timeX;
+					} else { //stop at the side of the block
+						x = columnX;
+						movingX = false;
+						if(e.getVelocityX() * stepX > 0)
+							e.setVelocityX(0);
+						e.onCollision(this, foreground.get(column, blockRow), column, blockRow, time);
+					}
+				} else {
+					float currentX = movingX ? startX + moveX * timeY : x;
+					int blockColumn = findSolidColumn(row, firstCell(currentX - halfWidth), lastCell(currentX + halfWidth));
+					if(blockColumn == NO_BLOCK) {
+						row += stepY;
+						checked = timeY;
+					} else { //stop at the top or bottom of the block and slow down from friction
+						y = rowY;
+						movingY = false;
+						if(e.getVelocityY() * stepY > 0)
+							e.setVelocityY(0);
+						Block block = foreground.get(blockColumn, row);
+						float slowdown = average(friction, block.getFriction()) * time;
+						if(e.getVelocityX() > 0) {
+							e.setVelocityX(Math.max(0, e.getVelocityX() - slowdown));
+						} else if(e.getVelocityX() < 0) {
+							e.setVelocityX(Math.min(0, e.getVelocityX() + slowdown));
 						}
+						e.onCollision(this, block, blockColumn, row, time);
 					}
 				}
 			}
+			
+			if(crossings == MAX_SWEEP_CROSSINGS) {
+				//stop where the blocks stopped being checked, rather than passing through the unchecked blocks
+				if(movingX)
+					x = startX + moveX * checked;
+				if(movingY)
+					y = startY + moveY * checked;
+			}
+			e.setPositionX(x);
+			e.setPositionY(y);
+		}
+		
+		//push the entity out of any blocks it already overlapped, such as a block placed on top of it
+		int leftBound = firstCell(e.getPositionX() - halfWidth), rightBound = lastCell(e.getPositionX() + halfWidth);
+		int bottomBound = firstCell(e.getPositionY() - halfHeight), topBound = lastCell(e.getPositionY() + halfHeight);
+		for(int row = bottomBound; row <= topBound; row++) {
+			for(int column = leftBound; column <= rightBound; column++) {
+				int flags = foreground.getCollisionFlags(column, row);
+				
+				//only resolve collisions with solid blocks that have at least one exposed side
+				if(flags != 0 && (flags & BlockGrid.SOLID_NEIGHBORS) != BlockGrid.SOLID_NEIGHBORS) {
+					resolveBlockCollision(this, e, foreground.getType(column, row), column, row, time, 
+							(flags & BlockGrid.SOLID_ABOVE) != 0, (flags & BlockGrid.SOLID_LEFT) != 0, 
+							(flags & BlockGrid.SOLID_RIGHT) != 0, (flags & BlockGrid.SOLID_BELOW) != 0);
+				}
+			}
+		}
+	}
+	
+	/** @return the row of the lowest solid foreground block in the rows of the column, or {@link #NO_BLOCK} **/
+	private int findSolidRow(int column, int bottom, int top) {
+		for(int row = bottom; row <= top; row++) {
+			if((foreground.getCollisionFlags(column, row) & BlockGrid.SOLID) != 0)
+				return row;
+		}
+		return NO_BLOCK;
+	}
+	
+	/** @return the column of the leftmost solid foreground block in the columns of the row, or {@link #NO_BLOCK} **/
+	private int findSolidColumn(int row, int left, int right) {
+		for(int column = left; column <= right; column++) {
+			if((foreground.getCollisionFlags(column, row) & BlockGrid.SOLID) != 0)
+				return column;
+		}
+		return NO_BLOCK;
+	}
+	
+	/** @return the first block coordinate whose block overlaps the coordinates after {@code start}, blocks are centered on their coordinates **/
+	private static int firstCell(float start) {
+		return (int)Math.floor(start - 0.5f) + 1;
+	}
+	
+	/** @return the last block coordinate whose block overlaps the coordinates before {@code end} **/
+	private static int lastCell(float end) {
+		return (int)Math.ceil(end + 0.5f) - 1;
+	}
+	
+	/**
+	 * Performs an action on the index of every entity, in batches on the update pool if there is one and
+	 * there are enough entities, or in order on the calling thread otherwise.
+	 * @param action the action to perform, which must only modify the entity at the index
+	 */
+	private void forEachEntity(IntConsumer action) {
+		forEachRange(entities.size(), PARALLEL_BATCH_SIZE, (start, end) -> {
+			for(int i = start; i < end; i++) {
+				action.accept(i);
+			}
+		});
+	}
+	
+	/**
+	 * Performs an action on consecutive ranges of indices that together cover every index below {@code count},
+	 * in parallel on the update pool if there is one and there is more than one batch.
+	 * @param count the number of indices
+	 * @param batchSize the maximum length of each range
+	 * @param action the action to perform, which must only modify the elements in the range
+	 */
+	private void forEachRange(int count, int batchSize, RangeAction action) {
+		if(pool == null || count <= batchSize) {
+			action.accept(0, count);
+		} else {
+			pool.invoke(new EntityBatch(action, batchSize, 0, count));
+		}
+	}
+	
+	/**
+	 * Performs an action on the slots of each group of entities, splitting each group into batches as
+	 * {@link #forEachEntity(IntConsumer)} does.
+	 * @param action the action to perform, which must only modify the entities in the range
+	 */
+	private void forEachGroup(GroupAction action) {
+		for(int group = 0; group < groups.count(); group++) {
+			int current = group, start = groups.start(group);
+			forEachRange(groups.end(group) - start, PARALLEL_BATCH_SIZE, 
+					(first, end) -> action.accept(current, start + first, start + end));
+		}
+	}
+	
+	private static interface RangeAction {
+		void accept(int start, int end);
+	}
+	
+	private static interface GroupAction {
+		void accept(int group, int start, int end);
+	}
+	
+	/** Splits a range of entity indices in half until each range is at most one batch, then performs an action on each range **/
+	private static final class EntityBatch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final transient RangeAction action;
+		private final int batchSize, start, end;
+		
+		EntityBatch(RangeAction action, int batchSize, int start, int end) {
+			this.action = action;
+			this.batchSize = batchSize;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			if(end - start <= batchSize) {
+				action.accept(start, end);
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new EntityBatch(action, batchSize, start, middle), new EntityBatch(action, batchSize, middle, end));
+			}
+		}
+	}
+	
+	/** Records that two entities collided, by index **/
+	private void addCollision(int first, int second) {
+		if(collisionCount == collisions.length / 2)
+			collisions = Arrays.copyOf(collisions, Math.max(16, collisions.length * 2));
+		collisions[collisionCount * 2] = first;
+		collisions[collisionCount * 2 + 1] = second;
+		collisionCount++;
+	}
+	
+	/**
+	 * Groups the recorded collisions by entity, so that the partners of the entity at index {@code i} are
+	 * stored in {@code collisionPartners} from {@code collisionStart[i]} up to {@code collisionStart[i + 1]}.
+	 */
+	private void groupCollisions() {
+		int count = entities.size();
+		if(collisionStart.length < count + 1)
+			collisionStart = new int[count + 1];
+		if(collisionPartners.length < collisionCount * 2)
+			collisionPartners = new int[collisions.length];
+		Arrays.fill(collisionStart, 0, count + 1, 0);
+		
+		//count the collisions of each entity, then convert the counts to start offsets
+		for(int c = 0; c < collisionCount * 2; c++) {
+			collisionStart[collisions[c] + 1]++;
+		}
+		for(int i = 0; i < count; i++) {
+			collisionStart[i + 1] += collisionStart[i];
+		}
+		
+		//place each partner at the next free offset of the entity, shifting the offsets down by one entity
+		for(int c = 0; c < collisionCount; c++) {
+			int first = collisions[c * 2], second = collisions[c * 2 + 1];
+			collisionPartners[collisionStart[first]++] = second;
+			collisionPartners[collisionStart[second]++] = first;
 		}
+		System.arraycopy(collisionStart, 0, collisionStart, 1, count);
+		collisionStart[0] = 0;
 	}
 	
 	/**
@@ -421,8 +934,9 @@ public class World implements Transportable, Iterable<Entity> {
 		return false;
 	}
 	
-	private static boolean resolveBlockCollision(World world, Entity e, Block block, float blockX, float blockY, float time, 
+	private static boolean resolveBlockCollision(World world, Entity e, int blockType, float blockX, float blockY, float time, 
 			boolean blockUp, boolean blockLeft, boolean blockRight, boolean blockDown) {
+		float blockFriction = BlockRegistry.getFriction(blockType);
 		float width = 0.5f * (e.getWidth() + 1);
 		float height = 0.5f * (e.getHeight() + 1);
 		float deltaX = blockX - e.getPositionX();
@@ -436,9 +950,9 @@ public class World implements Transportable, Iterable<Entity> {
 					if(e.getVelocityY() > 0) {
 						e.setVelocityY(0);
 					} if(e.getVelocityX() > 0) {
-		        		e.setVelocityX(Math.max(0, e.getVelocityX() - average(e.getFriction(), block.getFriction()) * time));
+		        		e.setVelocityX(Math.max(0, e.getVelocityX() - average(e.getFriction(), blockFriction) * time));
 		        	} else if(e.getVelocityX() < 0) {
-		        		e.setVelocityX(Math.min(0, e.getVelocityX() + average(e.getFriction(), block.getFriction()) * time));
+		        		e.setVelocityX(Math.min(0, e.getVelocityX() + average(e.getFriction(), blockFriction) * time));
 		        	}
 		        } else if(!blockRight) { /* collision on right of block */
 		        	e.setPositionX(blockX + width);
@@ -457,13 +971,13 @@ public class World implements Transportable, Iterable<Entity> {
 		        	if(e.getVelocityY() < 0) {
 		        		e.setVelocityY(0);
 		        	} if(e.getVelocityX() > 0) {
-		        		e.setVelocityX(Math.max(0, e.getVelocityX() - average(e.getFriction(), block.getFriction()) * time));
+		        		e.setVelocityX(Math.max(0, e.getVelocityX() - average(e.getFriction(), blockFriction) * time));
 		        	} else if(e.getVelocityX() < 0) {
-		        		e.setVelocityX(Math.min(0, e.getVelocityX() + average(e.getFriction(), block.getFriction()) * time));
+		        		e.setVelocityX(Math.min(0, e.getVelocityX() + average(e.getFriction(), blockFriction) * time));
 		        	}
 		        }
 		    }
-			e.onCollision(world, block, blockX, blockY, time);
+			e.onCollision(world, BlockRegistry.getBlock(blockType), blockX, blockY, time);
 		    return true;
 		}
 		return false;
@@ -0,0 +1,64 @@
+package ritzow.sandbox.world;
+
+import ritzow.sandbox.data.Serializer;
+import ritzow.sandbox.data.Transportable;
+import ritzow.sandbox.data.TransportableDataReader;
+import ritzow.sandbox.data.UncheckedByteArrayDataWriter;
+
+/**
+ * A copy of the foreground and background blocks in one chunk of a World, used to send the
+ * world to clients a chunk at a time. Created by {@link World#getChunk(int, int)} and applied
+ * to another world with {@link World#setChunk(WorldChunk)}.
+ * @author Solomon Ritzow
+ */
+public final class WorldChunk implements Transportable {
+	private final int chunkX, chunkY;
+
+	/** copies of the chunks from each grid, null if the grid has no blocks in the chunk **/
+	final Chunk foreground, background;
+
+	WorldChunk(int chunkX, int chunkY, Chunk foreground, Chunk background) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.foreground = foreground;
+		this.background = background;
+	}
+
+	public WorldChunk(TransportableDataReader data) {
+		this.chunkX = data.readInteger();
+		this.chunkY = data.readInteger();
+		byte layers = data.readByte();
+		long key = Chunk.key(chunkX, chunkY);
+		this.foreground = (layers & 1) != 0 ? new PaletteChunk(key, data) : null;
+		this.background = (layers & 2) != 0 ? new PaletteChunk(key, data) : null;
+	}
+
+	@Override
+	public byte[] getBytes(Serializer ser) {
+		byte[] foregroundBytes = foreground == null ? new byte[0] : foreground.getBytes(ser);
+		byte[] backgroundBytes = background == null ? new byte[0] : background.getBytes(ser);
+
+		//chunk coordinates, which layers are present, then the present layers
+		byte[] data = new byte[4 + 4 + 1 + foregroundBytes.length + backgroundBytes.length];
+		UncheckedByteArrayDataWriter writer = new UncheckedByteArrayDataWriter(data, 0);
+		writer.writeInteger(chunkX);
+		writer.writeInteger(chunkY);
+		writer.writeByte((byte)((foreground == null ? 0 : 1) | (background == null ? 0 : 2)));
+		writer.writeBytes(foregroundBytes);
+		writer.writeBytes(backgroundBytes);
+		return data;
+	}
+
+	public int getChunkX() {
+		return chunkX;
+	}
+
+	public int getChunkY() {
+		return chunkY;
+	}
+
+	/** @return true if neither the foreground nor the background contain any blocks in the chunk **/
+	public boolean isEmpty() {
+		return foreground == null && background == null;
+	}
+}
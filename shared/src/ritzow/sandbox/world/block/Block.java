@@ -5,6 +5,14 @@ import ritzow.sandbox.world.BlockGrid;
 import ritzow.sandbox.world.World;
 
 public abstract class Block implements Transportable {
+	/** type ID assigned by BlockRegistry, or BlockRegistry.AIR if the block type is not registered **/
+	int typeID;
+	
+	/** @return the type ID assigned to this block by {@link BlockRegistry#register(Block)} **/
+	public final int getTypeID() {
+		return typeID;
+	}
+	
 	public abstract int getHardness();
 	public abstract float getFriction();
 	public abstract boolean isSolid();
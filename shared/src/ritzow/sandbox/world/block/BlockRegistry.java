@@ -0,0 +1,84 @@
+package ritzow.sandbox.world.block;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns each Block type a compact numeric type ID and a single shared instance. Blocks are stateless,
+ * so a BlockGrid only ever stores the registered instance of each type. The per-type properties used
+ * by collision and rendering are copied into primitive arrays indexed by type ID so they can be read
+ * without calling into the Block instance. Block types must be registered before any BlockGrid is
+ * created or deserialized.
+ * @author Solomon Ritzow
+ */
+public final class BlockRegistry {
+	private BlockRegistry() {
+		throw new UnsupportedOperationException("BlockRegistry cannot be instantiated");
+	}
+
+	/** The type ID representing the absence of a block **/
+	public static final int AIR = 0;
+
+	/** The maximum number of block types that can be registered, including air **/
+	public static final int MAX_TYPES = 256;
+
+	private static final Block[] blocks = new Block[MAX_TYPES];
+	private static final boolean[] solid = new boolean[MAX_TYPES];
+	private static final float[] friction = new float[MAX_TYPES];
+	private static final int[] hardness = new int[MAX_TYPES];
+	private static final Map<Class<? extends Block>, Block> instances = new HashMap<>();
+	private static int types = 1;
+
+	/**
+	 * Registers the shared instance of a block type and assigns it a type ID.
+	 * @param block the instance that will represent every block of its type
+	 * @return the provided block
+	 * @throws IllegalStateException if the type is already registered or the registry is full
+	 */
+	public static synchronized <T extends Block> T register(T block) {
+		if(instances.containsKey(block.getClass()))
+			throw new IllegalStateException(block.getClass().getName() + " is already registered");
+		if(types == MAX_TYPES)
+			throw new IllegalStateException("no more than " + MAX_TYPES + " block types can be registered");
+		int id = types++;
+		block.typeID = id;
+		blocks[id] = block;
+		solid[id] = block.isSolid();
+		friction[id] = block.getFriction();
+		hardness[id] = block.getHardness();
+		instances.put(block.getClass(), block);
+		return block;
+	}
+
+	/**
+	 * @param type the class of a registered block type
+	 * @return the shared instance of the block type
+	 * @throws IllegalArgumentException if the block type is not registered
+	 */
+	public static synchronized <T extends Block> T getInstance(Class<T> type) {
+		Block block = instances.get(type);
+		if(block == null)
+			throw new IllegalArgumentException(type.getName() + " is not registered");
+		return type.cast(block);
+	}
+
+	/** @return the shared instance of the block type, or null for {@link #AIR} **/
+	public static Block getBlock(int type) {
+		return blocks[type];
+	}
+
+	/** @return whether blocks of the type are solid, false for {@link #AIR} **/
+	public static boolean isSolid(int type) {
+		return solid[type];
+	}
+
+	/** @return the friction of blocks of the type **/
+	public static float getFriction(int type) {
+		return friction[type];
+	}
+
+	/** @return the hardness of blocks of the type **/
+	public static int getHardness(int type) {
+		return hardness[type];
+	}
+}
@@ -1,7 +1,6 @@
 package ritzow.sandbox.world.block;
 
 import ritzow.sandbox.data.ByteUtil;
-import ritzow.sandbox.data.DataReader;
 import ritzow.sandbox.data.Serializer;
 
 public class DirtBlock extends Block {
@@ -10,10 +9,6 @@ public class DirtBlock extends Block {
 		
 	}
 	
-	public DirtBlock(DataReader data) {
-		
-	}
-
 	@Override
 	public int getHardness() {
 		return 5;
@@ -38,4 +33,14 @@ public class DirtBlock extends Block {
 	public byte[] getBytes(Serializer ser) {
 		return ByteUtil.EMPTY_BYTE_ARRAY;
 	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return o != null && o.getClass() == getClass();
+	}
+	
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
 }
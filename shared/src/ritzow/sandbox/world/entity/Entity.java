@@ -8,39 +8,50 @@ import ritzow.sandbox.world.World;
 import ritzow.sandbox.world.block.Block;
 
 public abstract class Entity implements Transportable {
+	/** collision categories used by {@link #getCollisionCategory()} and {@link #getCollisionMask()} **/
+	public static final int 
+		CATEGORY_DEFAULT = 1,
+		CATEGORY_PLAYER = 1 << 1,
+		CATEGORY_ITEM = 1 << 2,
+		CATEGORY_ALL = ~0;
+	
 	protected final int entityID;
 	
-	protected float 
-		positionX,
-		positionY,
-		velocityX,
-		velocityY;
+	/** the store containing the position and velocity of the entity, and the slot of the entity in the store **/
+	PhysicsStore store;
+	int slot;
 	
-	public void update(World world, float time) {
-		positionX += velocityX * time;
-		positionY += velocityY * time;
-	}
+	/**
+	 * Updates anything specific to the entity, such as its velocity. Called each World update before the
+	 * World moves the entity by its velocity and applies gravity.
+	 * @param world the world the entity is in
+	 * @param time the amount of time to simulate
+	 */
+	public void update(World world, float time) {/* optional implementation */}
 	
 	public Entity(int entityID) {
+		this(entityID, 0, 0);
+	}
+	
+	/** Creates an entity at a position, with a velocity of zero **/
+	protected Entity(int entityID, float positionX, float positionY) {
 		this.entityID = entityID;
+		this.store = PhysicsStore.create(positionX, positionY, 0, 0);
 	}
 	
 	public Entity(DataReader reader) {
 		entityID = reader.readInteger();
-		positionX = reader.readFloat();
-		positionY = reader.readFloat();
-		velocityX = reader.readFloat();
-		velocityY = reader.readFloat();
+		store = PhysicsStore.create(reader.readFloat(), reader.readFloat(), reader.readFloat(), reader.readFloat());
 	}
 	
 	@Override
 	public byte[] getBytes(Serializer ser) {
 		byte[] data = new byte[20];
 		ByteUtil.putInteger(data, 0, entityID);
-		ByteUtil.putFloat(data, 4, positionX);
-		ByteUtil.putFloat(data, 8, positionY);
-		ByteUtil.putFloat(data, 12, velocityX);
-		ByteUtil.putFloat(data, 16, velocityY);
+		ByteUtil.putFloat(data, 4, getPositionX());
+		ByteUtil.putFloat(data, 8, getPositionY());
+		ByteUtil.putFloat(data, 12, getVelocityX());
+		ByteUtil.putFloat(data, 16, getVelocityY());
 		return data;
 	}
 	
@@ -63,6 +74,43 @@ public abstract class Entity implements Transportable {
 	/** @return true if the entity should collide with other entities rather than passing through them **/
 	public abstract boolean doEntityCollisionResolution();
 	
+	/** @return true if the World may stop updating the entity while it rests on a solid block, false by default **/
+	public boolean canSleep() {
+		return false;
+	}
+	
+	/** @return true if the entity is resting and is not being moved or collision checked by its World **/
+	public final boolean isSleeping() {
+		return slot >= store.awake;
+	}
+	
+	/** Resumes updating a sleeping entity. Changing the position or velocity of an entity also wakes it. **/
+	public final void wake() {
+		store.wake(this);
+	}
+	
+	/**
+	 * Declares that {@link #getWidth()}, {@link #getHeight()}, {@link #getFriction()}, {@link #doCollision()},
+	 * {@link #doBlockCollisionResolution()}, {@link #canSleep()}, {@link #getCollisionCategory()}, and
+	 * {@link #getCollisionMask()} return the same values for every instance of the entity's class, so that a
+	 * World grouping entities by class can read them once for all of the entities of the class. A subclass
+	 * that overrides any of those methods must override this method too if the values can differ.
+	 * @return true if the properties are the same for every instance of the class, false by default
+	 */
+	public boolean hasConstantProperties() {
+		return false;
+	}
+	
+	/** @return the collision categories the entity belongs to, as a combination of the CATEGORY constants **/
+	public int getCollisionCategory() {
+		return CATEGORY_DEFAULT;
+	}
+	
+	/** @return the collision categories of entities this entity can collide with, two entities only collide if both accept each other **/
+	public int getCollisionMask() {
+		return CATEGORY_ALL;
+	}
+	
 	/** @return the roughness of the surface of the entity **/
 	public abstract float getFriction();
 	
@@ -77,62 +125,99 @@ public abstract class Entity implements Transportable {
 	
 	/** @return the speed of the Entity based on the velocity in the x and y directions **/
 	public final float getSpeed() {
+		float velocityX = getVelocityX(), velocityY = getVelocityY();
 		return (float)Math.abs(Math.sqrt(velocityX * velocityX + velocityY * velocityY));
 	}
 
 	/** @return the horizontal position of the of the entity in the world **/
 	public final float getPositionX() {
-		return positionX;
+		return store.positionX[slot];
 	}
 	
 	/** @return the vertical position of the of the entity in the world **/
 	public final float getPositionY() {
-		return positionY;
+		return store.positionY[slot];
 	}
 
 	/** @return the distance the entity should move in the horizontal direction each game update **/
 	public final float getVelocityX() {
-		return velocityX;
+		return store.velocityX[slot];
 	}
 
 	/** @return the distance the entity should move in the vertical direction each game update **/
 	public final float getVelocityY() {
-		return velocityY;
+		return store.velocityY[slot];
+	}
+
+	/** @return the horizontal position of the entity before the most recent world update moved it **/
+	public final float getPreviousPositionX() {
+		return store.previousX[slot];
+	}
+	
+	/** @return the vertical position of the entity before the most recent world update moved it **/
+	public final float getPreviousPositionY() {
+		return store.previousY[slot];
+	}
+	
+	/**
+	 * @param interpolation the fraction of the most recent world update to interpolate, from 0 to 1
+	 * @return the horizontal position between the position before the most recent world update (0) and the current position (1)
+	 */
+	public final float getInterpolatedPositionX(float interpolation) {
+		float previous = store.previousX[slot];
+		return previous + (store.positionX[slot] - previous) * interpolation;
+	}
+	
+	/**
+	 * @param interpolation the fraction of the most recent world update to interpolate, from 0 to 1
+	 * @return the vertical position between the position before the most recent world update (0) and the current position (1)
+	 */
+	public final float getInterpolatedPositionY(float interpolation) {
+		float previous = store.previousY[slot];
+		return previous + (store.positionY[slot] - previous) * interpolation;
 	}
 
 	public final void setPositionX(float positionX) {
-		this.positionX = positionX;
+		if(positionX != getPositionX())
+			wake();
+		store.positionX[slot] = positionX;
 	}
 
 	public final void setPositionY(float positionY) {
-		this.positionY = positionY;
+		if(positionY != getPositionY())
+			wake();
+		store.positionY[slot] = positionY;
 	}
 
 	public final void setVelocityX(float velocityX) {
-		this.velocityX = velocityX;
+		if(velocityX != getVelocityX())
+			wake();
+		store.velocityX[slot] = velocityX;
 	}
 
 	public final void setVelocityY(float velocityY) {
-		this.velocityY = velocityY;
+		if(velocityY != getVelocityY())
+			wake();
+		store.velocityY[slot] = velocityY;
 	}
 	
 	public final void setSpeed(float speed) {
 		float delta = speed / getSpeed();
-		velocityX *= delta;
-		velocityY *= delta;
+		setVelocityX(getVelocityX() * delta);
+		setVelocityY(getVelocityY() * delta);
 	}
 	
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("positionX = ");
-		builder.append(positionX);
+		builder.append(getPositionX());
 		builder.append(", positionY = ");
-		builder.append(positionY);
+		builder.append(getPositionY());
 		builder.append(", velocityX = ");
-		builder.append(velocityX);
+		builder.append(getVelocityX());
 		builder.append(", velocityY = ");
-		builder.append(velocityY);
+		builder.append(getVelocityY());
 		return builder.toString();
 	}
 }
\ No newline at end of file
@@ -14,10 +14,8 @@ public class ItemEntity<I extends Item> extends Entity {
 	}
 	
 	public ItemEntity(int entityID, I item, float x, float y) {
-		super(entityID);
+		super(entityID, x, y);
 		this.item = item;
-		this.positionX = x;
-		this.positionY = y;
 	}
 	
 	public ItemEntity(TransportableDataReader input) {
@@ -53,6 +51,26 @@ public class ItemEntity<I extends Item> extends Entity {
 	public boolean doEntityCollisionResolution() {
 		return false;
 	}
+	
+	@Override
+	public boolean canSleep() {
+		return true;
+	}
+	
+	@Override
+	public boolean hasConstantProperties() {
+		return true;
+	}
+	
+	@Override
+	public int getCollisionCategory() {
+		return CATEGORY_ITEM;
+	}
+	
+	@Override
+	public int getCollisionMask() {
+		return ~CATEGORY_ITEM; //items never interact with each other
+	}
 
 	@Override
 	public float getFriction() {
@@ -0,0 +1,234 @@
+package ritzow.sandbox.world.entity;
+
+import java.util.Arrays;
+
+/**
+ * Stores the position and velocity of a group of entities in parallel arrays, so that moving every entity
+ * reads and writes contiguous memory instead of following a reference to each entity. Each entity keeps its
+ * state in exactly one store, either the store of the World it belongs to or a store of its own, and its
+ * position and velocity accessors read the arrays of that store. Awake entities occupy the first slots
+ * and sleeping entities occupy the rest, so that only awake entities are integrated. Not thread safe.
+ * @author Solomon Ritzow
+ */
+public final class PhysicsStore {
+	/** the state of each entity, indexed by the slot of the entity **/
+	float[] positionX, positionY, velocityX, velocityY;
+	
+	/** the position of each entity when {@link #savePositions()} was last called **/
+	float[] previousX, previousY;
+	
+	/** the amount of time each entity has been at rest **/
+	private float[] restTime;
+
+	/** the entity in each slot **/
+	private Entity[] entities;
+
+	/** the number of slots in use, slots at or after this index are unused **/
+	private int size;
+	
+	/** the number of awake entities, slots at or after this index contain sleeping entities **/
+	int awake;
+
+	public PhysicsStore() {
+		this(16);
+	}
+
+	private PhysicsStore(int capacity) {
+		this.positionX = new float[capacity];
+		this.positionY = new float[capacity];
+		this.velocityX = new float[capacity];
+		this.velocityY = new float[capacity];
+		this.previousX = new float[capacity];
+		this.previousY = new float[capacity];
+		this.restTime = new float[capacity];
+		this.entities = new Entity[capacity];
+	}
+
+	/**
+	 * Creates a store with one awake slot for an entity being constructed, which uses the store with a slot of zero.
+	 * The store does not reference the entity, so that the entity does not escape its constructor, which is safe 
+	 * because an entity in a store of its own is never moved to another slot of the store.
+	 * @return the store containing the entity's initial state
+	 */
+	static PhysicsStore create(float positionX, float positionY, float velocityX, float velocityY) {
+		PhysicsStore store = new PhysicsStore(1);
+		store.positionX[0] = store.previousX[0] = positionX;
+		store.positionY[0] = store.previousY[0] = positionY;
+		store.velocityX[0] = velocityX;
+		store.velocityY[0] = velocityY;
+		store.size = 1;
+		store.awake = 1;
+		return store;
+	}
+
+	/**
+	 * Moves the position and velocity of an entity from the store it is in to this store. The entity is awake
+	 * in this store, even if it was sleeping in the previous store.
+	 * @param entity the entity to add
+	 */
+	public void add(Entity entity) {
+		PhysicsStore previous = entity.store;
+		if(previous != this) {
+			if(size == entities.length)
+				resize(size * 2);
+			moveSlot(awake, size++); //make room at the end of the awake entities
+			int previousSlot = entity.slot;
+			positionX[awake] = previous.positionX[previousSlot];
+			positionY[awake] = previous.positionY[previousSlot];
+			velocityX[awake] = previous.velocityX[previousSlot];
+			velocityY[awake] = previous.velocityY[previousSlot];
+			previousX[awake] = positionX[awake]; //the entity has not moved in this store yet
+			previousY[awake] = positionY[awake];
+			restTime[awake] = 0;
+			entities[awake] = entity;
+			entity.slot = awake++;
+			entity.store = this;
+			previous.release(previousSlot);
+		}
+	}
+
+	/**
+	 * Moves the position and velocity of an entity from this store to a new store of its own.
+	 * @param entity the entity to remove, which is not changed if it is not in this store
+	 */
+	public void remove(Entity entity) {
+		if(entity.store == this)
+			new PhysicsStore(1).add(entity);
+	}
+
+	/** @return the number of entities in the store **/
+	public int size() {
+		return size;
+	}
+	
+	/** @return the number of awake entities in the store, which are stored in the slots before this index **/
+	public int getAwakeCount() {
+		return awake;
+	}
+	
+	/**
+	 * Stops moving an awake entity until it is woken, and sets its velocity to zero.
+	 * @param entity an entity in this store
+	 */
+	public void sleep(Entity entity) {
+		if(entity.slot < awake) {
+			swap(entity.slot, --awake);
+			velocityX[awake] = 0;
+			velocityY[awake] = 0;
+			restTime[awake] = 0;
+		}
+	}
+	
+	/**
+	 * Moves a sleeping entity back to the awake entities.
+	 * @param entity an entity in this store
+	 */
+	void wake(Entity entity) {
+		if(entity.slot >= awake)
+			swap(entity.slot, awake++);
+	}
+	
+	/**
+	 * Adds to the amount of time an awake entity has been at rest.
+	 * @param entity an entity in this store
+	 * @param time the amount of time to add
+	 * @return the total amount of time the entity has been at rest
+	 */
+	public float rest(Entity entity, float time) {
+		return restTime[entity.slot] += time;
+	}
+	
+	/** @param entity an entity in this store that is no longer at rest **/
+	public void stopResting(Entity entity) {
+		restTime[entity.slot] = 0;
+	}
+
+	/**
+	 * Records the current position of every entity, so that it can be interpolated with the position after
+	 * the next update using {@link Entity#getInterpolatedPositionX(float)} and {@link Entity#getInterpolatedPositionY(float)}.
+	 */
+	public void savePositions() {
+		System.arraycopy(positionX, 0, previousX, 0, size);
+		System.arraycopy(positionY, 0, previousY, 0, size);
+	}
+
+	/**
+	 * Moves each entity in a range of slots by its velocity, then accelerates it downwards by gravity.
+	 * Entities are in no particular order, but a range never contains the same entity as another range,
+	 * so separate ranges can be integrated in parallel.
+	 * @param start the first slot to integrate
+	 * @param end the slot after the last slot to integrate, at most {@link #getAwakeCount()}
+	 * @param time the amount of time to simulate
+	 * @param gravity the downward acceleration
+	 */
+	public void integrate(int start, int end, float time, float gravity) {
+		float[] positionX = this.positionX, positionY = this.positionY;
+		float[] velocityX = this.velocityX, velocityY = this.velocityY;
+		float fall = gravity * time;
+
+		//a counted loop over the arrays with no calls, which the JIT compiles to vector instructions
+		for(int i = start; i < end; i++) {
+			positionX[i] += velocityX[i] * time;
+			positionY[i] += velocityY[i] * time;
+			velocityY[i] -= fall;
+		}
+	}
+
+	/** Frees a slot, keeping the awake and sleeping entities in consecutive slots **/
+	private void release(int slot) {
+		if(slot < awake) {
+			//fill the slot with the last awake entity, then fill that slot with the last sleeping entity
+			moveSlot(--awake, slot);
+			moveSlot(--size, awake);
+		} else {
+			moveSlot(--size, slot);
+		}
+		entities[size] = null;
+	}
+
+	/** Moves the entity in slot {@code from} to slot {@code to}, overwriting slot {@code to} **/
+	private void moveSlot(int from, int to) {
+		if(from != to) {
+			positionX[to] = positionX[from];
+			positionY[to] = positionY[from];
+			velocityX[to] = velocityX[from];
+			velocityY[to] = velocityY[from];
+			previousX[to] = previousX[from];
+			previousY[to] = previousY[from];
+			restTime[to] = restTime[from];
+			entities[to] = entities[from];
+			entities[to].slot = to;
+		}
+	}
+
+	private void swap(int slot, int other) {
+		if(slot != other) {
+			float positionX = this.positionX[slot], positionY = this.positionY[slot];
+			float velocityX = this.velocityX[slot], velocityY = this.velocityY[slot];
+			float previousX = this.previousX[slot], previousY = this.previousY[slot];
+			float restTime = this.restTime[slot];
+			Entity entity = entities[slot];
+			moveSlot(other, slot);
+			this.positionX[other] = positionX;
+			this.positionY[other] = positionY;
+			this.velocityX[other] = velocityX;
+			this.velocityY[other] = velocityY;
+			this.previousX[other] = previousX;
+			this.previousY[other] = previousY;
+			this.restTime[other] = restTime;
+			entities[other] = entity;
+			entity.slot = other;
+		}
+	}
+
+	private void resize(int capacity) {
+		positionX = Arrays.copyOf(positionX, capacity);
+		positionY = Arrays.copyOf(positionY, capacity);
+		velocityX = Arrays.copyOf(velocityX, capacity);
+		velocityY = Arrays.copyOf(velocityY, capacity);
+		previousX = Arrays.copyOf(previousX, capacity);
+		previousY = Arrays.copyOf(previousY, capacity);
+		restTime = Arrays.copyOf(restTime, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+	}
+}
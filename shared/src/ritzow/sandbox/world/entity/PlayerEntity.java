@@ -56,33 +56,34 @@ public class PlayerEntity extends Entity implements Living {
 	public void update(World world, float time) {
 		if(blockBelow(world.getForeground())) {
 			if(left && right) {
-				velocityX = 0;
+				setVelocityX(0);
 			} if(left) {
-				velocityX = -MOVEMENT_SPEED;
+				setVelocityX(-MOVEMENT_SPEED);
 			} else if(right) {
-				velocityX = MOVEMENT_SPEED;
+				setVelocityX(MOVEMENT_SPEED);
 			}
 			if(!JETPACK_MODE && up) {
-				velocityY = JUMP_SPEED;
+				setVelocityY(JUMP_SPEED);
 			}
 		} else {
 			if(left ^ right) { //only one is down
 				if(left) {
-					velocityX = Math.max(-MOVEMENT_SPEED, velocityX - AIR_MOVEMENT / 10);
+					setVelocityX(Math.max(-MOVEMENT_SPEED, getVelocityX() - AIR_MOVEMENT / 10));
 				} else if(right) {
-					velocityX = Math.min(MOVEMENT_SPEED, velocityX + AIR_MOVEMENT / 10);
+					setVelocityX(Math.min(MOVEMENT_SPEED, getVelocityX() + AIR_MOVEMENT / 10));
 				}
 			}
 		}
 		
 		if(JETPACK_MODE && up) {
-			velocityY = Math.min(JUMP_SPEED, velocityY + AIR_MOVEMENT / 3);
+			setVelocityY(Math.min(JUMP_SPEED, getVelocityY() + AIR_MOVEMENT / 3));
 		}
 		
 		super.update(world, time);
 	}
 	
 	private boolean blockBelow(BlockGrid blocks) {
+		float positionX = getPositionX(), positionY = getPositionY();
 		return blockInRectangle(blocks, 
 				positionX - getWidth()/2 + 0.1f, 	//x1
 				positionY - getHeight()/2 - 0.1f, 	//y1
@@ -101,9 +102,11 @@ public class PlayerEntity extends Entity implements Living {
 	private static boolean blockInRectangle(BlockGrid blocks, float x1, float y1, float x2, float y2) {
 		int a1 = Math.round(x1), b1 = Math.round(y1), a2 = Math.round(x2), b2 = Math.round(y2);
 		for(int x = a1; x <= a2; x++) {
-			for(int y = b1; y <= b2; y++) {
-				if(blocks.isBlock(x, y))
-					return true;
+			if(blocks.getSurfaceHeight(x) >= b1) { //skip columns whose topmost solid block is below the rectangle
+				for(int y = b1; y <= b2; y++) {
+					if((blocks.getCollisionFlags(x, y) & BlockGrid.SOLID) != 0)
+						return true;
+				}
 			}
 		}
 		return false;
@@ -119,9 +122,9 @@ public class PlayerEntity extends Entity implements Living {
 				up = enabled; break;
 			case MOVE_DOWN:
 				if(enabled)
-					positionY -= SIZE_SCALE/2;
+					setPositionY(getPositionY() - SIZE_SCALE/2);
 				else
-					positionY += SIZE_SCALE/2;
+					setPositionY(getPositionY() + SIZE_SCALE/2);
 				down = enabled; break;
 		}
 	}
@@ -163,6 +166,11 @@ public class PlayerEntity extends Entity implements Living {
 	public boolean doEntityCollisionResolution() {
 		return true;
 	}
+	
+	@Override
+	public int getCollisionCategory() {
+		return CATEGORY_PLAYER;
+	}
 
 	@Override
 	public float getFriction() {